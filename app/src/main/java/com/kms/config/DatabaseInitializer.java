@@ -0,0 +1,163 @@
+package com.kms.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+// Creates the PostgreSQL specific objects that Hibernate's schema update cannot express
+@Component
+public class DatabaseInitializer implements SmartInitializingSingleton {
+
+  private static final Logger logger = LoggerFactory.getLogger(DatabaseInitializer.class);
+
+  private final JdbcTemplate jdbcTemplate;
+  private final TransactionTemplate transactionTemplate;
+
+  private volatile boolean trigramSearchEnabled;
+
+  public DatabaseInitializer(
+      JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+  }
+
+  // Called once every singleton is created, so after Hibernate has updated the schema and before
+  // the web server accepts requests or any ApplicationReadyEvent listener runs. The whole
+  // migration is one transaction holding the lock, the other nodes wait and then find it done.
+  @Override
+  public void afterSingletonsInstantiated() {
+    transactionTemplate.executeWithoutResult(
+        status -> {
+          jdbcTemplate.execute("SELECT pg_advisory_xact_lock(hashtext('database_initializer'))");
+          createTaskSearchIndex();
+          syncSequence("task", "task_seq");
+          syncSequence("contact", "contact_seq");
+          createContactEmployeeIdIndex();
+          createContactDictionary();
+          createTimestampIndexes();
+        });
+  }
+
+  public boolean isTrigramSearchEnabled() {
+    return trigramSearchEnabled;
+  }
+
+  // The extension may not be installable, the savepoint keeps that from failing the migration
+  private void createTaskSearchIndex() {
+    jdbcTemplate.execute("SAVEPOINT task_search_index");
+    try {
+      jdbcTemplate.execute("CREATE EXTENSION IF NOT EXISTS pg_trgm");
+      jdbcTemplate.execute(
+          "CREATE INDEX IF NOT EXISTS idx_task_task_trgm ON task USING gin (task gin_trgm_ops)");
+      jdbcTemplate.execute("RELEASE SAVEPOINT task_search_index");
+      trigramSearchEnabled = true;
+      logger.debug("Trigram index for task search is ready");
+    } catch (DataAccessException e) {
+      jdbcTemplate.execute("ROLLBACK TO SAVEPOINT task_search_index");
+      logger.warn("Trigram search is unavailable, falling back to unranked search", e);
+    }
+  }
+
+  // Lookup index for the upsert import, not unique since existing data may repeat employee IDs
+  private void createContactEmployeeIdIndex() {
+    jdbcTemplate.execute(
+        "CREATE INDEX IF NOT EXISTS idx_contact_employee_id ON contact (employee_id)");
+  }
+
+  // Indexes for the range scans of /reports/_histogram. Rows are mostly appended, so creation time
+  // follows the physical order and a tiny BRIN index is enough. The other timestamps move, so they
+  // get B-trees.
+  private void createTimestampIndexes() {
+    jdbcTemplate.execute(
+        "CREATE INDEX IF NOT EXISTS idx_task_created_at ON task USING brin (created_at)");
+    jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_task_updated_at ON task (updated_at)");
+    jdbcTemplate.execute(
+        "CREATE INDEX IF NOT EXISTS idx_task_completed_at ON task (completed_at)"
+            + " WHERE completed_at IS NOT NULL");
+    jdbcTemplate.execute(
+        "CREATE INDEX IF NOT EXISTS idx_contact_created_at ON contact USING brin (created_at)");
+    jdbcTemplate.execute(
+        "CREATE INDEX IF NOT EXISTS idx_contact_updated_at ON contact (updated_at)");
+  }
+
+  // Shared by title, department and project, which Contact stores as keys into this table
+  private void createContactDictionary() {
+    jdbcTemplate.execute(
+        "CREATE TABLE IF NOT EXISTS contact_dictionary"
+            + " (id serial PRIMARY KEY, value text NOT NULL UNIQUE)");
+    for (String column : new String[] {"title", "department", "project"}) {
+      migrateToDictionary(column);
+      addDictionaryForeignKey(column);
+    }
+  }
+
+  // Hibernate does not know about the dictionary table, so it cannot declare the reference
+  private void addDictionaryForeignKey(String column) {
+    String constraint = "fk_contact_" + column + "_id";
+    Integer existing =
+        jdbcTemplate.queryForObject(
+            "SELECT count(*) FROM pg_constraint"
+                + " WHERE conrelid = 'contact'::regclass AND conname = ?",
+            Integer.class,
+            constraint);
+    if (existing != null && existing > 0) {
+      return;
+    }
+    jdbcTemplate.execute(
+        "ALTER TABLE contact ADD CONSTRAINT "
+            + constraint
+            + " FOREIGN KEY ("
+            + column
+            + "_id) REFERENCES contact_dictionary (id)");
+    logger.debug("Contact {} references the contact dictionary", column);
+  }
+
+  // Contacts saved before the dictionary keep their text in the old column, so move it over to
+  // the key column Hibernate has just added and drop the old one. Each step can safely run again.
+  private void migrateToDictionary(String column) {
+    Integer legacy =
+        jdbcTemplate.queryForObject(
+            "SELECT count(*) FROM information_schema.columns"
+                + " WHERE table_schema = current_schema() AND table_name = 'contact'"
+                + " AND column_name = ?",
+            Integer.class,
+            column);
+    if (legacy == null || legacy == 0) {
+      return;
+    }
+    jdbcTemplate.update(
+        "INSERT INTO contact_dictionary (value) SELECT DISTINCT "
+            + column
+            + " FROM contact WHERE "
+            + column
+            + " IS NOT NULL ON CONFLICT DO NOTHING");
+    int moved =
+        jdbcTemplate.update(
+            "UPDATE contact c SET "
+                + column
+                + "_id = d.id FROM contact_dictionary d WHERE d.value = c."
+                + column);
+    jdbcTemplate.execute("ALTER TABLE contact DROP COLUMN " + column);
+    logger.debug("Moved {} contact {} values into the contact dictionary", moved, column);
+  }
+
+  // Tables created before switching to pooled sequences already hold identity ids, so move the
+  // sequence past them to keep new ids from colliding
+  private void syncSequence(String table, String sequence) {
+    Integer maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM " + table, Integer.class);
+    Long lastValue =
+        jdbcTemplate.queryForObject(
+            "SELECT last_value FROM pg_sequences WHERE sequencename = ?", Long.class, sequence);
+
+    if (maxId != null && (lastValue == null || maxId > lastValue)) {
+      jdbcTemplate.queryForObject(
+          "SELECT setval(CAST(? AS regclass), ?)", Long.class, sequence, maxId);
+      logger.debug("Sequence {} moved past existing id {}", sequence, maxId);
+    }
+  }
+}
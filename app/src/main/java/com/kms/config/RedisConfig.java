@@ -1,5 +1,6 @@
 package com.kms.config;
 
+import com.kms.domain.task.TaskEvents;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -7,6 +8,8 @@ import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
 import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.PatternTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 @Configuration
@@ -35,4 +38,14 @@ public class RedisConfig {
 
     return redisTemplate;
   }
+
+  // Relays task events published by any node to the SSE subscribers connected to this one
+  @Bean
+  RedisMessageListenerContainer redisMessageListenerContainer(
+      RedisConnectionFactory connectionFactory, TaskEvents taskEvents) {
+    RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+    container.setConnectionFactory(connectionFactory);
+    container.addMessageListener(taskEvents, new PatternTopic(TaskEvents.CHANNEL_PATTERN));
+    return container;
+  }
 }
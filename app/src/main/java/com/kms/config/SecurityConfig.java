@@ -64,6 +64,7 @@ public class SecurityConfig {
     corsConfiguration.setAllowedMethods(allowedMethods);
     corsConfiguration.setAllowedHeaders(allowedHeaders);
     corsConfiguration.setAllowCredentials(allowCredentials);
+    corsConfiguration.setExposedHeaders(List.of("X-Next-Cursor", "ETag"));
 
     UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
     source.registerCorsConfiguration("/**", corsConfiguration);
@@ -1,24 +1,66 @@
 package com.kms.domain.contact;
 
+import com.kms.domain.report.ReportListener;
 import jakarta.persistence.*;
-import lombok.AllArgsConstructor;
+import java.time.Instant;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
 
 @Data
 @Entity
-@AllArgsConstructor
+@EntityListeners(ReportListener.class)
 @NoArgsConstructor
 public class Contact {
+  // Pooled sequence ids let Hibernate batch inserts instead of one round trip per row
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "contact_seq")
+  @SequenceGenerator(name = "contact_seq", sequenceName = "contact_seq", allocationSize = 50)
   private Integer id;
 
   private String firstName;
   private String lastName;
+
+  // Stored as keys into contact_dictionary, so the table and its GROUP BYs work on integers
+  @Convert(converter = ContactDictionaryConverter.class)
+  @Column(name = "title_id")
   private String title;
+
+  @Convert(converter = ContactDictionaryConverter.class)
+  @Column(name = "department_id")
   private String department;
+
+  @Convert(converter = ContactDictionaryConverter.class)
+  @Column(name = "project_id")
   private String project;
+
   private String avatar;
   private Integer employeeId;
+
+  // Set by Hibernate on entity writes, the upsert import sets them in SQL
+  @CreationTimestamp
+  @Column(updatable = false)
+  private Instant createdAt;
+
+  @UpdateTimestamp private Instant updatedAt;
+
+  public Contact(
+      Integer id,
+      String firstName,
+      String lastName,
+      String title,
+      String department,
+      String project,
+      String avatar,
+      Integer employeeId) {
+    this.id = id;
+    this.firstName = firstName;
+    this.lastName = lastName;
+    this.title = title;
+    this.department = department;
+    this.project = project;
+    this.avatar = avatar;
+    this.employeeId = employeeId;
+  }
 }
@@ -1,21 +1,30 @@
 package com.kms.domain.contact;
 
+import com.kms.domain.contact.dto.ContactDedupeJob;
+import com.kms.domain.contact.dto.ContactImportJob;
+import com.kms.domain.contact.dto.ContactImportReport;
+import com.kms.domain.contact.dto.ContactMergeResult;
+import com.kms.domain.contact.dto.ContactSuggestion;
+import com.kms.domain.contact.dto.ContactUpsertReport;
 import com.kms.domain.contact.dto.SaveContactRequest;
 import com.kms.exceptions.ErrorResponse;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.headers.Header;
 import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import java.io.IOException;
 import java.util.List;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
 @Tag(name = "Contact Management", description = "APIs for managing contacts")
@@ -109,16 +118,50 @@ public interface ContactController {
       @Parameter(description = "ID of the contact to be deleted", example = "1") @PathVariable
           int id);
 
-  @Operation(summary = "Get all contacts")
-  @ApiResponse(
-      responseCode = "200",
-      description = "List of all contacts",
-      content =
-          @Content(
-              mediaType = "application/json",
-              array = @ArraySchema(schema = @Schema(implementation = Contact.class))))
+  @Operation(
+      summary = "Get all contacts, or a page of them",
+      description =
+          "Contacts are ordered by ID and streamed as they are read. With a limit, the ID to pass"
+              + " as 'after' for the next page is returned in the X-Next-Cursor header. Send the"
+              + " returned ETag in If-None-Match to get a 304 while the contacts are unchanged.")
+  @ApiResponses({
+    @ApiResponse(
+        responseCode = "200",
+        description = "List of contacts",
+        headers =
+            @Header(
+                name = "X-Next-Cursor",
+                description = "Cursor of the next page, absent on the last page"),
+        content =
+            @Content(
+                mediaType = "application/json",
+                array = @ArraySchema(schema = @Schema(implementation = Contact.class)))),
+    @ApiResponse(responseCode = "304", description = "The contacts have not changed"),
+    @ApiResponse(
+        responseCode = "400",
+        description = "Invalid paging parameters or unknown field",
+        content =
+            @Content(
+                mediaType = "application/json",
+                schema = @Schema(implementation = ErrorResponse.class)))
+  })
   @GetMapping
-  List<Contact> getAllContacts();
+  void getAllContacts(
+      @Parameter(description = "Return contacts with an ID greater than this cursor", example = "0")
+          @RequestParam(value = "after", required = false)
+          Integer after,
+      @Parameter(
+              description = "Maximum number of contacts to return (at most 5000)",
+              example = "100")
+          @RequestParam(value = "limit", required = false)
+          Integer limit,
+      @Parameter(
+              description = "Comma separated fields to return, all fields when absent",
+              example = "id,firstName,lastName")
+          @RequestParam(value = "fields", required = false)
+          String fields,
+      ServletWebRequest webRequest,
+      HttpServletResponse response);
 
   @Operation(summary = "Add contacts to the database")
   @ApiResponses({
@@ -163,18 +206,49 @@ public interface ContactController {
       @Parameter(description = "Name to search for", example = "John") @RequestParam("name")
           String name);
 
-  @Operation(summary = "Import contact records from a CSV file to the database")
+  @Operation(
+      summary = "Suggest contacts whose first, last or full name starts with the given text",
+      description =
+          "Served from an in-memory index for typeahead, matching ignores case and accents")
+  @ApiResponses({
+    @ApiResponse(
+        responseCode = "200",
+        description = "Matching contacts, empty when nothing matches",
+        content =
+            @Content(
+                mediaType = "application/json",
+                array = @ArraySchema(schema = @Schema(implementation = ContactSuggestion.class)))),
+    @ApiResponse(
+        responseCode = "400",
+        description = "Invalid limit",
+        content =
+            @Content(
+                mediaType = "application/json",
+                schema = @Schema(implementation = ErrorResponse.class)))
+  })
+  @GetMapping("/suggest")
+  List<ContactSuggestion> suggestContacts(
+      @Parameter(description = "Start of the name", example = "jo") @RequestParam("q") String query,
+      @Parameter(description = "Maximum number of suggestions, at most 50", example = "10")
+          @RequestParam(value = "limit", required = false)
+          Integer limit);
+
+  @Operation(
+      summary = "Import contact records from a CSV file to the database",
+      description =
+          "Rows are validated one by one and saved in batches of 500. Invalid rows are skipped"
+              + " and listed in the report with their row number.")
   @ApiResponses({
     @ApiResponse(
         responseCode = "201",
-        description = "Contacts imported successfully",
+        description = "Import report",
         content =
             @Content(
                 mediaType = "application/json",
-                array = @ArraySchema(schema = @Schema(implementation = Contact.class)))),
+                schema = @Schema(implementation = ContactImportReport.class))),
     @ApiResponse(
         responseCode = "400",
-        description = "Invalid CSV file",
+        description = "CSV header is missing a required column",
         content =
             @Content(
                 mediaType = "application/json",
@@ -189,15 +263,230 @@ public interface ContactController {
   })
   @PostMapping("/import")
   @ResponseStatus(HttpStatus.CREATED)
-  List<Contact> importContacts(
+  ContactImportReport importContacts(
       @Parameter(description = "CSV file to import contacts from") @RequestParam("file")
           MultipartFile file);
 
-  @Operation(summary = "Export all contact records from the database to a CSV file")
+  @Operation(
+      summary = "Insert or update contacts from a CSV file by employee ID",
+      description =
+          "Contacts whose employee ID already exists are updated, the others are inserted, so"
+              + " importing the same file again changes nothing. When a file lists an employee ID"
+              + " more than once, its last row wins. Invalid rows are skipped and listed in the"
+              + " report with their row number.")
+  @ApiResponses({
+    @ApiResponse(
+        responseCode = "200",
+        description = "Upsert report",
+        content =
+            @Content(
+                mediaType = "application/json",
+                schema = @Schema(implementation = ContactUpsertReport.class))),
+    @ApiResponse(
+        responseCode = "400",
+        description = "CSV header is missing a required column or a row is malformed",
+        content =
+            @Content(
+                mediaType = "application/json",
+                schema = @Schema(implementation = ErrorResponse.class)))
+  })
+  @PostMapping("/import/_upsert")
+  ContactUpsertReport upsertContacts(
+      @Parameter(description = "CSV file to upsert contacts from") @RequestParam("file")
+          MultipartFile file);
+
+  @Operation(
+      summary = "Import contact records from a CSV file in the background",
+      description =
+          "The file is stored and imported by a background job. Poll GET"
+              + " /contacts/import/{jobId} with the returned job ID for progress and errors.")
+  @ApiResponses({
+    @ApiResponse(
+        responseCode = "202",
+        description = "Import job queued",
+        content =
+            @Content(
+                mediaType = "application/json",
+                schema = @Schema(implementation = ContactImportJob.class))),
+    @ApiResponse(
+        responseCode = "503",
+        description = "Too many imports are queued, try again later",
+        content =
+            @Content(
+                mediaType = "application/json",
+                schema = @Schema(implementation = ErrorResponse.class)))
+  })
+  @PostMapping("/import/_async")
+  @ResponseStatus(HttpStatus.ACCEPTED)
+  ContactImportJob importContactsAsync(
+      @Parameter(description = "CSV file to import contacts from") @RequestParam("file")
+          MultipartFile file);
+
+  @Operation(summary = "Get the progress of a background contact import")
+  @ApiResponses({
+    @ApiResponse(
+        responseCode = "200",
+        description = "Import job state",
+        content =
+            @Content(
+                mediaType = "application/json",
+                schema = @Schema(implementation = ContactImportJob.class))),
+    @ApiResponse(
+        responseCode = "404",
+        description = "Import job not found or expired",
+        content =
+            @Content(
+                mediaType = "application/json",
+                schema = @Schema(implementation = ErrorResponse.class)))
+  })
+  @GetMapping("/import/{jobId}")
+  ContactImportJob getImportJob(
+      @Parameter(description = "ID of the import job") @PathVariable("jobId") String jobId);
+
+  @Operation(
+      summary = "Find duplicate contacts in the background",
+      description =
+          "Contacts sharing a normalized name or employee ID are compared and the likely"
+              + " duplicates are grouped into merge proposals. Poll GET /contacts/_dedupe/{jobId}"
+              + " for the proposals.")
+  @ApiResponses({
+    @ApiResponse(
+        responseCode = "202",
+        description = "Dedupe job queued",
+        content =
+            @Content(
+                mediaType = "application/json",
+                schema = @Schema(implementation = ContactDedupeJob.class))),
+    @ApiResponse(
+        responseCode = "503",
+        description = "A dedupe job is already queued, try again later",
+        content =
+            @Content(
+                mediaType = "application/json",
+                schema = @Schema(implementation = ErrorResponse.class)))
+  })
+  @PostMapping("/_dedupe")
+  @ResponseStatus(HttpStatus.ACCEPTED)
+  ContactDedupeJob dedupeContacts();
+
+  @Operation(summary = "Get the state and merge proposals of a dedupe job")
+  @ApiResponses({
+    @ApiResponse(
+        responseCode = "200",
+        description = "Dedupe job state",
+        content =
+            @Content(
+                mediaType = "application/json",
+                schema = @Schema(implementation = ContactDedupeJob.class))),
+    @ApiResponse(
+        responseCode = "404",
+        description = "Dedupe job not found or expired",
+        content =
+            @Content(
+                mediaType = "application/json",
+                schema = @Schema(implementation = ErrorResponse.class)))
+  })
+  @GetMapping("/_dedupe/{jobId}")
+  ContactDedupeJob getDedupeJob(
+      @Parameter(description = "ID of the dedupe job") @PathVariable("jobId") String jobId);
+
+  @Operation(
+      summary = "Merge the duplicate contacts proposed by a dedupe job",
+      description =
+          "Send the IDs of the contacts to keep to apply only their proposals, or no body to"
+              + " apply all of them. Duplicates fill the fields the kept contact is missing and"
+              + " are then deleted. Proposals that are not applied stay in the job for a later"
+              + " request.")
+  @ApiResponses({
+    @ApiResponse(
+        responseCode = "200",
+        description = "Merge result",
+        content =
+            @Content(
+                mediaType = "application/json",
+                schema = @Schema(implementation = ContactMergeResult.class))),
+    @ApiResponse(
+        responseCode = "404",
+        description = "Dedupe job not found or expired",
+        content =
+            @Content(
+                mediaType = "application/json",
+                schema = @Schema(implementation = ErrorResponse.class))),
+    @ApiResponse(
+        responseCode = "409",
+        description = "The job is not completed, is being applied or was already applied",
+        content =
+            @Content(
+                mediaType = "application/json",
+                schema = @Schema(implementation = ErrorResponse.class)))
+  })
+  @PostMapping("/_dedupe/{jobId}/apply")
+  ContactMergeResult applyDedupeJob(
+      @Parameter(description = "ID of the dedupe job") @PathVariable("jobId") String jobId,
+      @RequestBody(required = false) List<Integer> keepIds);
+
+  @Operation(
+      summary = "Export contact records as CSV, NDJSON or XLSX",
+      description =
+          "Rows are streamed as they are read. The filters and the column list are applied by"
+              + " the database query. Repeat a filter to match any of several values. The"
+              + " unfiltered CSV export is served from a snapshot that is rebuilt after contacts"
+              + " change, with an ETag for If-None-Match and byte ranges when gzip encoded.")
   @ApiResponses({
     @ApiResponse(responseCode = "200", description = "Contacts exported successfully"),
+    @ApiResponse(
+        responseCode = "400",
+        description = "Unknown format or column",
+        content =
+            @Content(
+                mediaType = "application/json",
+                schema = @Schema(implementation = ErrorResponse.class))),
     @ApiResponse(responseCode = "500", description = "Error while exporting data")
   })
   @GetMapping("/export")
-  void exportContacts(HttpServletResponse response) throws IOException;
+  void exportContacts(
+      @Parameter(description = "File format: csv, ndjson or xlsx", example = "csv")
+          @RequestParam(value = "format", defaultValue = "csv")
+          String format,
+      @Parameter(description = "Only export contacts of this department", example = "IT")
+          @RequestParam(value = "department", required = false)
+          List<String> departments,
+      @Parameter(description = "Only export contacts of this project", example = "Alpha Project")
+          @RequestParam(value = "project", required = false)
+          List<String> projects,
+      @Parameter(description = "Only export contacts with this title", example = "Manager")
+          @RequestParam(value = "title", required = false)
+          List<String> titles,
+      @Parameter(
+              description = "Comma separated columns to export, all columns when absent",
+              example = "firstName,lastName,department")
+          @RequestParam(value = "columns", required = false)
+          String columns,
+      @Parameter(description = "Compress the file with gzip, ignored for xlsx", example = "true")
+          @RequestParam(value = "gzip", defaultValue = "false")
+          boolean gzip,
+      HttpServletRequest request,
+      HttpServletResponse response)
+      throws IOException;
+
+  @Operation(
+      summary = "Download a gzip compressed CSV snapshot of all contacts",
+      description =
+          "The snapshot is rebuilt only after contacts change. Send the returned ETag in"
+              + " If-None-Match to get a 304 while the contacts are unchanged, or resume an"
+              + " interrupted download with a Range and an If-Range header.")
+  @ApiResponses({
+    @ApiResponse(
+        responseCode = "200",
+        description = "Snapshot file",
+        content = @Content(mediaType = "application/gzip")),
+    @ApiResponse(
+        responseCode = "206",
+        description = "Requested byte range of the snapshot file",
+        content = @Content(mediaType = "application/gzip")),
+    @ApiResponse(responseCode = "304", description = "The contacts have not changed"),
+    @ApiResponse(responseCode = "416", description = "The range lies outside the file")
+  })
+  @GetMapping("/export/snapshot")
+  void exportSnapshot(HttpServletRequest request, HttpServletResponse response) throws IOException;
 }
@@ -1,12 +1,22 @@
 package com.kms.domain.contact;
 
+import com.kms.domain.contact.dto.ContactDedupeJob;
+import com.kms.domain.contact.dto.ContactExportRequest;
+import com.kms.domain.contact.dto.ContactImportJob;
+import com.kms.domain.contact.dto.ContactImportReport;
+import com.kms.domain.contact.dto.ContactMergeResult;
+import com.kms.domain.contact.dto.ContactSuggestion;
+import com.kms.domain.contact.dto.ContactUpsertReport;
 import com.kms.domain.contact.dto.SaveContactRequest;
+import com.kms.utils.version.CollectionVersions;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import java.io.IOException;
 import java.util.List;
 import lombok.AllArgsConstructor;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
 @RestController
@@ -14,6 +24,10 @@ import org.springframework.web.multipart.MultipartFile;
 public class ContactControllerImpl implements ContactController {
 
   private final ContactService contactService;
+  private final CollectionVersions collectionVersions;
+  private final ContactImportJobs contactImportJobs;
+  private final ContactExportSnapshots contactExportSnapshots;
+  private final ContactDedupeJobs contactDedupeJobs;
 
   @Override
   public Contact getContact(int id) {
@@ -31,8 +45,16 @@ public class ContactControllerImpl implements ContactController {
   }
 
   @Override
-  public List<Contact> getAllContacts() {
-    return contactService.getAllContacts();
+  public void getAllContacts(
+      Integer after,
+      Integer limit,
+      String fields,
+      ServletWebRequest webRequest,
+      HttpServletResponse response) {
+    if (collectionVersions.isNotModified(ContactService.COLLECTION, webRequest)) {
+      return;
+    }
+    contactService.writeContacts(after, limit, fields, response);
   }
 
   @Override
@@ -46,12 +68,68 @@ public class ContactControllerImpl implements ContactController {
   }
 
   @Override
-  public List<Contact> importContacts(MultipartFile file) {
+  public List<ContactSuggestion> suggestContacts(String query, Integer limit) {
+    return contactService.suggestContacts(query, limit);
+  }
+
+  @Override
+  public ContactImportReport importContacts(MultipartFile file) {
     return contactService.importContacts(file);
   }
 
   @Override
-  public void exportContacts(HttpServletResponse response) throws IOException {
-    contactService.exportContacts(response);
+  public ContactUpsertReport upsertContacts(MultipartFile file) {
+    return contactService.upsertContacts(file);
+  }
+
+  @Override
+  public ContactImportJob importContactsAsync(MultipartFile file) {
+    return contactImportJobs.submit(file);
+  }
+
+  @Override
+  public ContactImportJob getImportJob(String jobId) {
+    return contactImportJobs.get(jobId);
+  }
+
+  @Override
+  public ContactDedupeJob dedupeContacts() {
+    return contactDedupeJobs.submit();
+  }
+
+  @Override
+  public ContactDedupeJob getDedupeJob(String jobId) {
+    return contactDedupeJobs.get(jobId);
+  }
+
+  @Override
+  public ContactMergeResult applyDedupeJob(String jobId, List<Integer> keepIds) {
+    return contactDedupeJobs.apply(jobId, keepIds);
+  }
+
+  @Override
+  public void exportContacts(
+      String format,
+      List<String> departments,
+      List<String> projects,
+      List<String> titles,
+      String columns,
+      boolean gzip,
+      HttpServletRequest request,
+      HttpServletResponse response)
+      throws IOException {
+    ContactExportRequest exportRequest =
+        new ContactExportRequest(format, departments, projects, titles, columns, gzip);
+    if (ContactExportSnapshots.covers(exportRequest)) {
+      contactExportSnapshots.export(exportRequest, request, response);
+      return;
+    }
+    contactService.exportContacts(exportRequest, response);
+  }
+
+  @Override
+  public void exportSnapshot(HttpServletRequest request, HttpServletResponse response)
+      throws IOException {
+    contactExportSnapshots.serve(request, response);
   }
 }
@@ -0,0 +1,171 @@
+package com.kms.domain.contact;
+
+import com.kms.domain.contact.dto.ContactImportReport;
+import com.kms.domain.contact.dto.SaveContactRequest;
+import jakarta.persistence.EntityManager;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+// Streams contact rows from CSV into the database. Rows are validated one by one and saved in
+// batches, each batch in its own transaction, so memory use does not grow with the file and a bad
+// row or batch does not undo the rows imported before it.
+@Service
+public class ContactCsvImporter {
+
+  private static final Logger logger = LoggerFactory.getLogger(ContactCsvImporter.class);
+
+  // Keep a multiple of spring.jpa.properties.hibernate.jdbc.batch_size
+  public static final int IMPORT_BATCH_SIZE = 500;
+  public static final int MAX_REPORTED_ERRORS = 1000;
+
+  static final List<String> REQUIRED_COLUMNS = List.of("firstName", "lastName", "employeeId");
+
+  private final EntityManager entityManager;
+  private final Validator validator;
+  private final TransactionTemplate transactionTemplate;
+  private final ContactDictionary contactDictionary;
+
+  public ContactCsvImporter(
+      EntityManager entityManager,
+      Validator validator,
+      PlatformTransactionManager transactionManager,
+      ContactDictionary contactDictionary) {
+    this.entityManager = entityManager;
+    this.validator = validator;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+    this.contactDictionary = contactDictionary;
+  }
+
+  public ContactImportReport importContacts(Reader reader) throws IOException {
+    return importContacts(reader, report -> {});
+  }
+
+  // Reports the running totals to the listener after every batch
+  public ContactImportReport importContacts(
+      Reader reader, Consumer<ContactImportReport> progressListener) throws IOException {
+    List<Contact> batch = new ArrayList<>(IMPORT_BATCH_SIZE);
+    List<String> errors = new ArrayList<>();
+    int imported = 0;
+    int failed = 0;
+    long row = 0;
+
+    try (CSVParser parser =
+        CSVFormat.DEFAULT.builder().setHeader().setSkipHeaderRecord(true).build().parse(reader)) {
+      for (String column : REQUIRED_COLUMNS) {
+        if (!parser.getHeaderMap().containsKey(column)) {
+          throw new IllegalArgumentException("CSV header is missing the column " + column);
+        }
+      }
+
+      for (CSVRecord csvRecord : parser) {
+        row = csvRecord.getRecordNumber();
+        List<String> rowErrors = new ArrayList<>();
+        SaveContactRequest request = toRequest(csvRecord, rowErrors);
+
+        if (request != null) {
+          Set<ConstraintViolation<SaveContactRequest>> violations = validator.validate(request);
+          for (ConstraintViolation<SaveContactRequest> violation : violations) {
+            rowErrors.add(violation.getMessage());
+          }
+        }
+
+        if (rowErrors.isEmpty()) {
+          batch.add(request.toContact());
+        } else {
+          failed++;
+          for (String error : rowErrors) {
+            addError(errors, row + ": " + error);
+          }
+        }
+
+        if (batch.size() == IMPORT_BATCH_SIZE) {
+          int saved = saveBatch(batch, row, errors);
+          imported += saved;
+          failed += IMPORT_BATCH_SIZE - saved;
+          batch.clear();
+          progressListener.accept(new ContactImportReport(imported, failed, List.copyOf(errors)));
+        }
+      }
+    }
+
+    if (!batch.isEmpty()) {
+      int saved = saveBatch(batch, row, errors);
+      imported += saved;
+      failed += batch.size() - saved;
+    }
+
+    logger.debug("Imported {} contacts from CSV, {} rows failed", imported, failed);
+    return new ContactImportReport(imported, failed, errors);
+  }
+
+  private SaveContactRequest toRequest(CSVRecord csvRecord, List<String> rowErrors) {
+    if (!csvRecord.isConsistent()) {
+      rowErrors.add("Expected " + csvRecord.getParser().getHeaderNames().size() + " columns");
+      return null;
+    }
+
+    SaveContactRequest request = new SaveContactRequest();
+    request.setFirstName(csvRecord.get("firstName"));
+    request.setLastName(csvRecord.get("lastName"));
+    request.setTitle(optional(csvRecord, "title"));
+    request.setDepartment(optional(csvRecord, "department"));
+    request.setProject(optional(csvRecord, "project"));
+    request.setAvatar(optional(csvRecord, "avatar"));
+
+    String employeeId = csvRecord.get("employeeId");
+    if (!employeeId.isBlank()) {
+      try {
+        request.setEmployeeId(Integer.parseInt(employeeId.trim()));
+      } catch (NumberFormatException e) {
+        rowErrors.add("Employee ID must be a number");
+        return null;
+      }
+    }
+    return request;
+  }
+
+  private static String optional(CSVRecord csvRecord, String column) {
+    return csvRecord.isMapped(column) ? csvRecord.get(column) : null;
+  }
+
+  // Returns the number of contacts saved, which is either the whole batch or none of it
+  private int saveBatch(List<Contact> batch, long lastRow, List<String> errors) {
+    try {
+      contactDictionary.ensureValuesOf(batch);
+      transactionTemplate.executeWithoutResult(
+          status -> {
+            for (Contact contact : batch) {
+              entityManager.persist(contact);
+            }
+            // Send the inserts as JDBC batches and keep the persistence context small
+            entityManager.flush();
+            entityManager.clear();
+          });
+      return batch.size();
+    } catch (RuntimeException e) {
+      logger.debug("Contact import batch ending at row {} failed", lastRow, e);
+      addError(errors, "batch ending at row " + lastRow + " failed: " + e.getMessage());
+      return 0;
+    }
+  }
+
+  private static void addError(List<String> errors, String error) {
+    if (errors.size() < MAX_REPORTED_ERRORS) {
+      errors.add(error);
+    }
+  }
+}
@@ -0,0 +1,285 @@
+package com.kms.domain.contact;
+
+import com.kms.domain.contact.dto.ContactUpsertReport;
+import jakarta.persistence.EntityManager;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVRecord;
+import org.postgresql.copy.CopyManager;
+import org.postgresql.core.BaseConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+// Merges a CSV file into the contacts keyed by employee ID, so importing the same file again
+// changes nothing. The file is streamed into a temporary table with COPY and merged with two
+// set-based statements instead of one INSERT per row.
+@Service
+public class ContactCsvUpserter {
+
+  private static final Logger logger = LoggerFactory.getLogger(ContactCsvUpserter.class);
+
+  // Keep in sync with the allocationSize of Contact.id
+  private static final int SEQUENCE_BLOCK_SIZE = 50;
+
+  // Staging source of each contact column, by CSV header name
+  private static final Map<String, String> COLUMNS = new LinkedHashMap<>();
+
+  static {
+    COLUMNS.put("firstName", "first_name");
+    COLUMNS.put("lastName", "last_name");
+    COLUMNS.put("title", "title_id");
+    COLUMNS.put("department", "department_id");
+    COLUMNS.put("project", "project_id");
+    COLUMNS.put("avatar", "avatar");
+  }
+
+  // Columns stored as keys into contact_dictionary, see ContactDictionaryConverter
+  private static final Set<String> DICTIONARY_COLUMNS = Set.of("title", "department", "project");
+
+  private final JdbcTemplate jdbcTemplate;
+  private final EntityManager entityManager;
+
+  public ContactCsvUpserter(JdbcTemplate jdbcTemplate, EntityManager entityManager) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.entityManager = entityManager;
+  }
+
+  @Transactional
+  public ContactUpsertReport upsertContacts(BufferedReader reader) throws IOException {
+    List<String> header = readHeader(reader);
+    for (String column : ContactCsvImporter.REQUIRED_COLUMNS) {
+      if (!header.contains(column)) {
+        throw new IllegalArgumentException("CSV header is missing the column " + column);
+      }
+    }
+    // Make pending entity changes visible to the statements below
+    entityManager.flush();
+
+    // One text column per CSV column, in file order, so COPY can load the file unchanged
+    StringJoiner staging = new StringJoiner(", ");
+    StringJoiner copyColumns = new StringJoiner(", ");
+    for (int i = 0; i < header.size(); i++) {
+      staging.add("c" + i + " text");
+      copyColumns.add("c" + i);
+    }
+    // Left over when an earlier upsert ran in the same, still open transaction
+    jdbcTemplate.execute("DROP TABLE IF EXISTS contact_import");
+    jdbcTemplate.execute(
+        "CREATE TEMPORARY TABLE contact_import (row_no bigserial, "
+            + staging
+            + ", employee_id integer, error text) ON COMMIT DROP");
+
+    long rows = copy(reader, "COPY contact_import (" + copyColumns + ") FROM STDIN (FORMAT csv)");
+    String employeeId = source(header, "employeeId");
+    validate(header, employeeId);
+
+    List<String> errors =
+        jdbcTemplate.query(
+            "SELECT row_no || ': ' || error FROM contact_import WHERE error IS NOT NULL"
+                + " ORDER BY row_no LIMIT ?",
+            (rs, rowNum) -> rs.getString(1),
+            ContactCsvImporter.MAX_REPORTED_ERRORS);
+    Integer failed =
+        jdbcTemplate.queryForObject(
+            "SELECT count(*) FROM contact_import WHERE error IS NOT NULL", Integer.class);
+
+    addDictionaryValues(header);
+
+    // The last row wins when the file lists an employee ID more than once
+    StringJoiner fields = new StringJoiner(", ");
+    for (Map.Entry<String, String> column : COLUMNS.entrySet()) {
+      String value = source(header, column.getKey());
+      if (DICTIONARY_COLUMNS.contains(column.getKey())) {
+        value = "(SELECT d.id FROM contact_dictionary d WHERE d.value = " + value + ")";
+      }
+      fields.add(value + " AS " + column.getValue());
+    }
+    String source =
+        "SELECT DISTINCT ON (employee_id) employee_id, "
+            + fields
+            + " FROM contact_import WHERE error IS NULL ORDER BY employee_id, row_no DESC";
+
+    // Serialize merges, so two imports cannot both insert the same new employee ID
+    jdbcTemplate.execute("LOCK TABLE contact IN SHARE ROW EXCLUSIVE MODE");
+
+    // Rows that match the database are skipped to avoid rewriting them on every re-import. Columns
+    // the file does not have keep their values.
+    StringJoiner assignments = new StringJoiner(", ");
+    StringJoiner current = new StringJoiner(", ");
+    StringJoiner incoming = new StringJoiner(", ");
+    for (Map.Entry<String, String> column : COLUMNS.entrySet()) {
+      if (header.contains(column.getKey())) {
+        assignments.add(column.getValue() + " = s." + column.getValue());
+        current.add("c." + column.getValue());
+        incoming.add("s." + column.getValue());
+      }
+    }
+    int updated =
+        jdbcTemplate.update(
+            "UPDATE contact c SET updated_at = now(), "
+                + assignments
+                + " FROM ("
+                + source
+                + ") s WHERE c.employee_id = s.employee_id AND ("
+                + current
+                + ") IS DISTINCT FROM ("
+                + incoming
+                + ")");
+
+    String newRows =
+        "SELECT s.* FROM ("
+            + source
+            + ") s WHERE NOT EXISTS (SELECT 1 FROM contact c WHERE c.employee_id = s.employee_id)";
+    Integer pending =
+        jdbcTemplate.queryForObject("SELECT count(*) FROM (" + newRows + ") n", Integer.class);
+    int inserted = pending == null || pending == 0 ? 0 : insert(newRows, pending);
+
+    // Entities loaded earlier in this transaction may be stale now
+    entityManager.clear();
+    logger.debug(
+        "Upserted {} CSV rows: {} contacts inserted, {} updated, {} rows failed",
+        rows,
+        inserted,
+        updated,
+        failed);
+    return new ContactUpsertReport(inserted, updated, failed == null ? 0 : failed, errors);
+  }
+
+  private static List<String> readHeader(BufferedReader reader) throws IOException {
+    String line = reader.readLine();
+    if (line == null) {
+      throw new IllegalArgumentException("CSV file is empty");
+    }
+    if (line.startsWith("\uFEFF")) {
+      line = line.substring(1);
+    }
+    List<String> header = new ArrayList<>();
+    for (CSVRecord csvRecord : CSVFormat.DEFAULT.parse(new StringReader(line))) {
+      csvRecord.forEach(header::add);
+    }
+    return header;
+  }
+
+  // Staging column holding the CSV column, or NULL when the file does not have it
+  private static String source(List<String> header, String column) {
+    int index = header.indexOf(column);
+    return index < 0 ? "NULL" : "c" + index;
+  }
+
+  // Adds the new titles, departments and projects of the valid rows before the merge maps them to
+  // their keys. They are added in this transaction rather than through ContactDictionary, which
+  // would hold a second connection, and the merge reads them back from the table.
+  private void addDictionaryValues(List<String> header) {
+    StringJoiner values = new StringJoiner(" UNION ");
+    for (String column : DICTIONARY_COLUMNS) {
+      if (header.contains(column)) {
+        values.add("SELECT " + source(header, column) + " FROM contact_import WHERE error IS NULL");
+      }
+    }
+    if (values.length() > 0) {
+      jdbcTemplate.update(
+          "INSERT INTO contact_dictionary (value) SELECT v FROM ("
+              + values
+              + ") d(v) WHERE v IS NOT NULL ON CONFLICT DO NOTHING");
+    }
+  }
+
+  private long copy(BufferedReader reader, String sql) {
+    return jdbcTemplate.execute(
+        (ConnectionCallback<Long>)
+            connection -> {
+              CopyManager copyManager = new CopyManager(connection.unwrap(BaseConnection.class));
+              try {
+                return copyManager.copyIn(sql, reader);
+              } catch (SQLException e) {
+                // Data exceptions such as a row with too many columns are the file's fault
+                if (e.getSQLState() != null && e.getSQLState().startsWith("22")) {
+                  throw new IllegalArgumentException("Invalid CSV file: " + e.getMessage(), e);
+                }
+                throw e;
+              } catch (IOException e) {
+                throw new SQLException("Failed to read the CSV file", e);
+              }
+            });
+  }
+
+  // Same rules and messages as SaveContactRequest, checked for all rows in two statements
+  private void validate(List<String> header, String employeeId) {
+    jdbcTemplate.update(
+        "UPDATE contact_import SET employee_id = CAST(btrim("
+            + employeeId
+            + ") AS integer) WHERE btrim("
+            + employeeId
+            + ") ~ '^-?[0-9]{1,9}$'");
+    jdbcTemplate.update(
+        "UPDATE contact_import SET error = CASE"
+            + " WHEN coalesce(btrim("
+            + source(header, "firstName")
+            + "), '') = '' THEN 'Firstname cannot be blank'"
+            + " WHEN coalesce(btrim("
+            + source(header, "lastName")
+            + "), '') = '' THEN 'Lastname cannot be blank'"
+            + " WHEN coalesce(btrim("
+            + employeeId
+            + "), '') = '' THEN 'Employee ID cannot be null'"
+            + " WHEN employee_id IS NULL THEN 'Employee ID must be a number'"
+            + " WHEN employee_id < 1 THEN 'Employee ID must be a positive number' END");
+  }
+
+  // Takes IDs from contact_seq in blocks the way Hibernate's pooled optimizer does, so rows
+  // inserted here never collide with IDs that Hibernate hands out from its own blocks
+  private int insert(String newRows, int count) {
+    List<Long> blocks = new ArrayList<>();
+    while (blocks.size() * SEQUENCE_BLOCK_SIZE < count) {
+      Long hi = jdbcTemplate.queryForObject("SELECT nextval('contact_seq')", Long.class);
+      // A fresh sequence returns its start value first, which does not end a whole block
+      if (hi != null && hi >= SEQUENCE_BLOCK_SIZE) {
+        blocks.add(hi);
+      }
+    }
+
+    StringJoiner columns = new StringJoiner(", ");
+    COLUMNS.values().forEach(columns::add);
+    return jdbcTemplate.execute(
+        (ConnectionCallback<Integer>)
+            connection -> {
+              Array ids = connection.createArrayOf("bigint", blocks.toArray());
+              try (PreparedStatement statement =
+                  connection.prepareStatement(
+                      "INSERT INTO contact (id, created_at, updated_at, employee_id, "
+                          + columns
+                          + ") SELECT (?::bigint[])[(n - 1) / "
+                          + SEQUENCE_BLOCK_SIZE
+                          + " + 1] - "
+                          + (SEQUENCE_BLOCK_SIZE - 1)
+                          + " + (n - 1) % "
+                          + SEQUENCE_BLOCK_SIZE
+                          + ", now(), now(), employee_id, "
+                          + columns
+                          + " FROM (SELECT r.*, row_number() OVER (ORDER BY r.employee_id) AS n"
+                          + " FROM ("
+                          + newRows
+                          + ") r) numbered")) {
+                statement.setArray(1, ids);
+                return statement.executeUpdate();
+              } finally {
+                ids.free();
+              }
+            });
+  }
+}
@@ -0,0 +1,203 @@
+package com.kms.domain.contact;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kms.domain.contact.dto.ContactDedupeJob;
+import com.kms.domain.contact.dto.ContactMergeProposal;
+import com.kms.domain.contact.dto.ContactMergeResult;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+// Runs contact de-duplication in the background and keeps its proposals in Redis until they are
+// reviewed and applied, from any node
+@Service
+public class ContactDedupeJobs {
+
+  private static final Logger logger = LoggerFactory.getLogger(ContactDedupeJobs.class);
+
+  // Replaces the job only while it still holds the state the caller read
+  private static final RedisScript<Long> COMPARE_AND_SET =
+      RedisScript.of(
+          "if redis.call('get', KEYS[1]) == ARGV[1] then"
+              + " redis.call('set', KEYS[1], ARGV[2], 'PX', ARGV[3]) return 1 else return 0 end",
+          Long.class);
+
+  private final ContactDeduplicator contactDeduplicator;
+  private final RedisTemplate<String, String> redisTemplate;
+  private final ObjectMapper objectMapper;
+  private final ThreadPoolTaskExecutor executor;
+  private final Duration retention;
+
+  public ContactDedupeJobs(
+      ContactDeduplicator contactDeduplicator,
+      RedisTemplate<String, String> redisTemplate,
+      ObjectMapper objectMapper,
+      @Value("${contacts.dedupe.retention:P1D}") Duration retention) {
+    this.contactDeduplicator = contactDeduplicator;
+    this.redisTemplate = redisTemplate;
+    this.objectMapper = objectMapper;
+    this.retention = retention;
+
+    // The job already uses every core while scoring, so one runs at a time and one may wait
+    this.executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(1);
+    executor.setMaxPoolSize(1);
+    executor.setQueueCapacity(1);
+    executor.setThreadNamePrefix("contact-dedupe-");
+    executor.initialize();
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    executor.shutdown();
+  }
+
+  public ContactDedupeJob submit() {
+    ContactDedupeJob job = new ContactDedupeJob();
+    job.setJobId(UUID.randomUUID().toString());
+    job.setStatus(ContactDedupeJob.Status.QUEUED);
+    job.setSubmittedAt(Instant.now());
+
+    save(job);
+    try {
+      executor.execute(() -> run(job));
+    } catch (TaskRejectedException e) {
+      redisTemplate.delete(key(job.getJobId()));
+      logger.debug("Contact dedupe {} rejected, a job is already queued", job.getJobId());
+      throw e;
+    }
+
+    logger.debug("Contact dedupe {} queued", job.getJobId());
+    return job;
+  }
+
+  public ContactDedupeJob get(String jobId) {
+    return read(jobId, json(jobId));
+  }
+
+  // Applies the proposals of the given contacts to keep, or all proposals when keepIds is null.
+  // The job is marked APPLYING before merging, so a concurrent apply of the same proposals fails
+  // instead of merging them twice. Proposals left out stay in the job for a later apply.
+  public ContactMergeResult apply(String jobId, List<Integer> keepIds) {
+    String json = json(jobId);
+    ContactDedupeJob job = read(jobId, json);
+    if (job.getStatus() != ContactDedupeJob.Status.COMPLETED) {
+      throw new IllegalStateException(
+          "Dedupe job "
+              + jobId
+              + " is "
+              + job.getStatus()
+              + ", only completed jobs can be applied");
+    }
+
+    List<ContactMergeProposal> proposals = new ArrayList<>();
+    List<ContactMergeProposal> remaining = new ArrayList<>();
+    for (ContactMergeProposal proposal : job.getProposals()) {
+      if (keepIds == null || keepIds.contains(proposal.getKeepId())) {
+        proposals.add(proposal);
+      } else {
+        remaining.add(proposal);
+      }
+    }
+
+    job.setStatus(ContactDedupeJob.Status.APPLYING);
+    Long swapped =
+        redisTemplate.execute(
+            COMPARE_AND_SET,
+            List.of(key(jobId)),
+            json,
+            write(job),
+            String.valueOf(retention.toMillis()));
+    if (!Long.valueOf(1).equals(swapped)) {
+      throw new IllegalStateException("Dedupe job " + jobId + " was changed by another request");
+    }
+
+    ContactMergeResult result;
+    try {
+      result = contactDeduplicator.merge(proposals);
+    } catch (RuntimeException e) {
+      job.setStatus(ContactDedupeJob.Status.COMPLETED);
+      save(job);
+      throw e;
+    }
+
+    if (remaining.isEmpty()) {
+      job.setStatus(ContactDedupeJob.Status.APPLIED);
+    } else {
+      job.setStatus(ContactDedupeJob.Status.COMPLETED);
+    }
+    job.setProposals(remaining);
+    save(job);
+    return result;
+  }
+
+  private void run(ContactDedupeJob job) {
+    job.setStatus(ContactDedupeJob.Status.RUNNING);
+    job.setStartedAt(Instant.now());
+    save(job);
+
+    try {
+      contactDeduplicator.findDuplicates(job);
+      job.setStatus(ContactDedupeJob.Status.COMPLETED);
+    } catch (RuntimeException e) {
+      logger.warn("Contact dedupe {} failed", job.getJobId(), e);
+      job.setStatus(ContactDedupeJob.Status.FAILED);
+      job.setError(e.getMessage() != null ? e.getMessage() : e.toString());
+    } finally {
+      job.setFinishedAt(Instant.now());
+      save(job);
+    }
+
+    logger.debug(
+        "Contact dedupe {} finished with {} proposals", job.getJobId(), job.getProposals().size());
+  }
+
+  private String json(String jobId) {
+    String json = redisTemplate.opsForValue().get(key(jobId));
+    if (json == null) {
+      throw new NoSuchElementException("Dedupe job not found with id: " + jobId);
+    }
+    return json;
+  }
+
+  private ContactDedupeJob read(String jobId, String json) {
+    try {
+      return objectMapper.readValue(json, ContactDedupeJob.class);
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException("Dedupe job " + jobId + " cannot be read", e);
+    }
+  }
+
+  private String write(ContactDedupeJob job) {
+    try {
+      return objectMapper.writeValueAsString(job);
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException("Dedupe job " + job.getJobId() + " cannot be stored", e);
+    }
+  }
+
+  private void save(ContactDedupeJob job) {
+    try {
+      redisTemplate.opsForValue().set(key(job.getJobId()), write(job), retention);
+    } catch (RuntimeException e) {
+      logger.warn("Could not store the state of contact dedupe {}", job.getJobId(), e);
+    }
+  }
+
+  private static String key(String jobId) {
+    return "contacts:dedupe:" + jobId;
+  }
+}
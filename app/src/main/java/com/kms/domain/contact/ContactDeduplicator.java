@@ -0,0 +1,409 @@
+package com.kms.domain.contact;
+
+import com.kms.domain.contact.dto.ContactDedupeJob;
+import com.kms.domain.contact.dto.ContactMergeProposal;
+import com.kms.domain.contact.dto.ContactMergeResult;
+import com.kms.utils.version.CollectionVersions;
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+// Finds contacts that look like the same person. Contacts are only compared within blocks that
+// share a normalized name or employee ID key, which keeps the work close to linear in the number
+// of contacts, and the blocks are scored in parallel on a fork-join pool.
+@Service
+public class ContactDeduplicator {
+
+  private static final Logger logger = LoggerFactory.getLogger(ContactDeduplicator.class);
+
+  // Larger blocks come from very common keys, comparing all their pairs would dominate the run
+  static final int MAX_BLOCK_SIZE = 1000;
+
+  public static final int MAX_PROPOSALS = 10000;
+
+  private final ContactRepository contactRepository;
+  private final ContactSuggestIndex contactSuggestIndex;
+  private final CollectionVersions collectionVersions;
+  private final TransactionTemplate readOnlyTransaction;
+  private final ForkJoinPool pool;
+  private final double threshold;
+
+  public ContactDeduplicator(
+      ContactRepository contactRepository,
+      ContactSuggestIndex contactSuggestIndex,
+      CollectionVersions collectionVersions,
+      PlatformTransactionManager transactionManager,
+      @Value("${contacts.dedupe.parallelism:0}") int parallelism,
+      @Value("${contacts.dedupe.threshold:0.9}") double threshold) {
+    this.contactRepository = contactRepository;
+    this.contactSuggestIndex = contactSuggestIndex;
+    this.collectionVersions = collectionVersions;
+    this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+    this.readOnlyTransaction.setReadOnly(true);
+    this.pool =
+        new ForkJoinPool(
+            parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    this.threshold = threshold;
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    pool.shutdownNow();
+  }
+
+  // Fills the job with the counts and merge proposals
+  public void findDuplicates(ContactDedupeJob job) {
+    List<Candidate> candidates = load();
+    Map<Integer, Candidate> byId = new HashMap<>();
+    Map<String, List<Candidate>> blocks = new HashMap<>();
+    for (Candidate candidate : candidates) {
+      byId.put(candidate.id, candidate);
+      for (String key : candidate.keys) {
+        blocks.computeIfAbsent(key, k -> new ArrayList<>()).add(candidate);
+      }
+    }
+
+    Map<String, List<Candidate>> comparable = new HashMap<>();
+    int skippedBlocks = 0;
+    for (Map.Entry<String, List<Candidate>> block : blocks.entrySet()) {
+      if (block.getValue().size() > MAX_BLOCK_SIZE) {
+        skippedBlocks++;
+      } else if (block.getValue().size() > 1) {
+        comparable.put(block.getKey(), block.getValue());
+      }
+    }
+
+    LongAdder pairs = new LongAdder();
+    List<Match> matches =
+        pool.submit(
+                () ->
+                    comparable.entrySet().parallelStream()
+                        .flatMap(
+                            block ->
+                                score(block.getKey(), block.getValue(), comparable.keySet(), pairs))
+                        .toList())
+            .join();
+
+    List<ContactMergeProposal> proposals = group(matches, byId);
+    job.setContacts(candidates.size());
+    job.setPairs(pairs.sum());
+    job.setSkippedBlocks(skippedBlocks);
+    job.setProposals(proposals);
+    logger.debug(
+        "Scored {} pairs of {} contacts, {} merge proposals, {} blocks skipped",
+        pairs.sum(),
+        candidates.size(),
+        proposals.size(),
+        skippedBlocks);
+  }
+
+  // Each duplicate fills the fields the kept contact is missing and is then deleted
+  @Transactional
+  public ContactMergeResult merge(List<ContactMergeProposal> proposals) {
+    int merged = 0;
+    int deleted = 0;
+    int skipped = 0;
+
+    for (ContactMergeProposal proposal : proposals) {
+      Optional<Contact> optionalKeep = contactRepository.findById(proposal.getKeepId());
+      List<Contact> duplicates = contactRepository.findAllById(proposal.getDuplicateIds());
+      if (optionalKeep.isEmpty() || duplicates.size() != proposal.getDuplicateIds().size()) {
+        logger.debug("Contact merge into ID {} skipped, a contact is gone", proposal.getKeepId());
+        skipped++;
+        continue;
+      }
+
+      Contact keep = optionalKeep.get();
+      for (Contact duplicate : duplicates) {
+        keep.setFirstName(orElse(keep.getFirstName(), duplicate.getFirstName()));
+        keep.setLastName(orElse(keep.getLastName(), duplicate.getLastName()));
+        keep.setTitle(orElse(keep.getTitle(), duplicate.getTitle()));
+        keep.setDepartment(orElse(keep.getDepartment(), duplicate.getDepartment()));
+        keep.setProject(orElse(keep.getProject(), duplicate.getProject()));
+        keep.setAvatar(orElse(keep.getAvatar(), duplicate.getAvatar()));
+        if (keep.getEmployeeId() == null) {
+          keep.setEmployeeId(duplicate.getEmployeeId());
+        }
+      }
+      contactRepository.deleteAll(duplicates);
+      contactSuggestIndex.put(contactRepository.save(keep));
+      duplicates.forEach(duplicate -> contactSuggestIndex.remove(duplicate.getId()));
+      merged++;
+      deleted += duplicates.size();
+    }
+
+    if (merged > 0) {
+      collectionVersions.bump(ContactService.COLLECTION);
+    }
+    logger.debug("Merged {} contact groups, {} contacts deleted", merged, deleted);
+    return new ContactMergeResult(merged, deleted, skipped);
+  }
+
+  private List<Candidate> load() {
+    return readOnlyTransaction.execute(
+        status -> {
+          try (Stream<Object[]> rows = contactRepository.streamDeduplicationFields()) {
+            return rows.map(Candidate::new).toList();
+          }
+        });
+  }
+
+  // A pair can share several keys, it is scored only in the block of the first key they share
+  // among the compared blocks, so no block needs to know what the others scored
+  private Stream<Match> score(
+      String key, List<Candidate> block, Set<String> comparable, LongAdder pairs) {
+    List<Match> matches = new ArrayList<>();
+    for (int i = 0; i < block.size(); i++) {
+      for (int j = i + 1; j < block.size(); j++) {
+        Candidate a = block.get(i);
+        Candidate b = block.get(j);
+        if (a.id.equals(b.id) || !key.equals(firstSharedKey(a, b, comparable))) {
+          continue;
+        }
+        pairs.increment();
+        double score = similarity(a, b);
+        if (score >= threshold) {
+          matches.add(new Match(a.id, b.id, score));
+        }
+      }
+    }
+    return matches.stream();
+  }
+
+  private static String firstSharedKey(Candidate a, Candidate b, Set<String> comparable) {
+    for (String key : a.keys) {
+      if (comparable.contains(key) && b.keys.contains(key)) {
+        return key;
+      }
+    }
+    return null;
+  }
+
+  static double similarity(Candidate a, Candidate b) {
+    // Different employee IDs mean different people, however close the names are
+    if (a.employeeId != null && b.employeeId != null && !a.employeeId.equals(b.employeeId)) {
+      return 0;
+    }
+    double direct =
+        (jaroWinkler(a.firstName, b.firstName) + jaroWinkler(a.lastName, b.lastName)) / 2;
+    // Catches first and last name entered the wrong way round
+    double swapped =
+        (jaroWinkler(a.firstName, b.lastName) + jaroWinkler(a.lastName, b.firstName)) / 2;
+    double names = Math.max(direct, swapped);
+
+    if (a.employeeId != null && a.employeeId.equals(b.employeeId)) {
+      return 0.5 + names / 2;
+    }
+    if (a.department != null && b.department != null && !a.department.equals(b.department)) {
+      names -= 0.05;
+    }
+    return names;
+  }
+
+  static double jaroWinkler(String a, String b) {
+    if (a.isEmpty() || b.isEmpty()) {
+      return 0;
+    }
+    if (a.equals(b)) {
+      return 1;
+    }
+
+    int window = Math.max(0, Math.max(a.length(), b.length()) / 2 - 1);
+    boolean[] matchedA = new boolean[a.length()];
+    boolean[] matchedB = new boolean[b.length()];
+    int matches = 0;
+    for (int i = 0; i < a.length(); i++) {
+      int end = Math.min(i + window + 1, b.length());
+      for (int j = Math.max(0, i - window); j < end; j++) {
+        if (!matchedB[j] && a.charAt(i) == b.charAt(j)) {
+          matchedA[i] = true;
+          matchedB[j] = true;
+          matches++;
+          break;
+        }
+      }
+    }
+    if (matches == 0) {
+      return 0;
+    }
+
+    int transpositions = 0;
+    for (int i = 0, j = 0; i < a.length(); i++) {
+      if (matchedA[i]) {
+        while (!matchedB[j]) {
+          j++;
+        }
+        if (a.charAt(i) != b.charAt(j)) {
+          transpositions++;
+        }
+        j++;
+      }
+    }
+
+    double m = matches;
+    double jaro = (m / a.length() + m / b.length() + (m - transpositions / 2.0) / m) / 3;
+    int prefix = 0;
+    while (prefix < Math.min(4, Math.min(a.length(), b.length()))
+        && a.charAt(prefix) == b.charAt(prefix)) {
+      prefix++;
+    }
+    return jaro + prefix * 0.1 * (1 - jaro);
+  }
+
+  // Joins matching pairs into groups, so A~B and B~C become a single merge of A, B and C. Two
+  // groups holding different employee IDs are never joined, a contact without one that matches
+  // both only joins the better match.
+  private static List<ContactMergeProposal> group(
+      List<Match> matches, Map<Integer, Candidate> byId) {
+    List<Match> ordered = new ArrayList<>(matches);
+    ordered.sort(
+        Comparator.comparingDouble((Match match) -> match.score)
+            .reversed()
+            .thenComparingInt(match -> match.a)
+            .thenComparingInt(match -> match.b));
+
+    Map<Integer, Integer> parent = new HashMap<>();
+    Map<Integer, Integer> employeeIds = new HashMap<>();
+    List<Match> joined = new ArrayList<>();
+    for (Match match : ordered) {
+      int rootA = find(parent, match.a);
+      int rootB = find(parent, match.b);
+      if (rootA == rootB) {
+        joined.add(match);
+        continue;
+      }
+      Integer employeeA = employeeIds.getOrDefault(rootA, byId.get(rootA).employeeId);
+      Integer employeeB = employeeIds.getOrDefault(rootB, byId.get(rootB).employeeId);
+      if (employeeA != null && employeeB != null && !employeeA.equals(employeeB)) {
+        continue;
+      }
+      parent.put(rootA, rootB);
+      if (employeeB == null && employeeA != null) {
+        employeeIds.put(rootB, employeeA);
+      }
+      joined.add(match);
+    }
+
+    Map<Integer, Set<Candidate>> groups = new HashMap<>();
+    Map<Integer, Double> scores = new HashMap<>();
+    for (Match match : joined) {
+      int root = find(parent, match.a);
+      Set<Candidate> members = groups.computeIfAbsent(root, k -> new LinkedHashSet<>());
+      members.add(byId.get(match.a));
+      members.add(byId.get(match.b));
+      scores.merge(root, match.score, Math::min);
+    }
+
+    List<ContactMergeProposal> proposals = new ArrayList<>();
+    for (Map.Entry<Integer, Set<Candidate>> group : groups.entrySet()) {
+      List<Candidate> members = new ArrayList<>(group.getValue());
+      // Keep the contact with an employee ID and the most fields, the oldest one on a tie
+      members.sort(
+          Comparator.comparing((Candidate candidate) -> candidate.employeeId == null)
+              .thenComparing(candidate -> -candidate.filled)
+              .thenComparing(candidate -> candidate.id));
+      List<Integer> duplicateIds =
+          members.subList(1, members.size()).stream()
+              .map(candidate -> candidate.id)
+              .sorted()
+              .toList();
+      proposals.add(
+          new ContactMergeProposal(members.get(0).id, duplicateIds, scores.get(group.getKey())));
+    }
+    proposals.sort(
+        Comparator.comparingDouble(ContactMergeProposal::getScore)
+            .reversed()
+            .thenComparing(ContactMergeProposal::getKeepId));
+    return proposals.size() > MAX_PROPOSALS ? proposals.subList(0, MAX_PROPOSALS) : proposals;
+  }
+
+  private static int find(Map<Integer, Integer> parent, int id) {
+    int root = id;
+    Integer next;
+    while ((next = parent.get(root)) != null && next != root) {
+      root = next;
+    }
+    parent.put(id, root);
+    parent.putIfAbsent(root, root);
+    return root;
+  }
+
+  private static String orElse(String value, String fallback) {
+    return value == null || value.isBlank() ? fallback : value;
+  }
+
+  // Names reduced to lower case letters, so spelling differences in case, accents, spaces and
+  // punctuation do not count against a match
+  static final class Candidate {
+
+    final Integer id;
+    final String firstName;
+    final String lastName;
+    final Integer employeeId;
+    final String department;
+    final int filled;
+    final List<String> keys;
+
+    Candidate(Object[] row) {
+      this.id = (Integer) row[0];
+      this.firstName = letters((String) row[1]);
+      this.lastName = letters((String) row[2]);
+      this.employeeId = (Integer) row[3];
+      this.department = row[4] == null ? null : ContactSuggestIndex.normalize((String) row[4]);
+      int count = 0;
+      for (int i = 1; i < row.length; i++) {
+        if (row[i] != null && !(row[i] instanceof String text && text.isBlank())) {
+          count++;
+        }
+      }
+      this.filled = count;
+      this.keys = blockingKeys();
+    }
+
+    private List<String> blockingKeys() {
+      List<String> keys = new ArrayList<>(3);
+      if (!firstName.isEmpty() && !lastName.isEmpty()) {
+        keys.add(lastName + "|" + firstName.charAt(0));
+        keys.add(firstName + "|" + lastName.charAt(0));
+      }
+      if (employeeId != null) {
+        keys.add("#" + employeeId);
+      }
+      // The two name keys are equal when the first and last name are
+      return keys.stream().distinct().toList();
+    }
+
+    private static String letters(String name) {
+      return ContactSuggestIndex.normalize(name).replaceAll("[^a-z]", "");
+    }
+  }
+
+  private static final class Match {
+
+    final int a;
+    final int b;
+    final double score;
+
+    Match(int a, int b, double score) {
+      this.a = a;
+      this.b = b;
+      this.score = score;
+    }
+  }
+}
@@ -0,0 +1,182 @@
+package com.kms.domain.contact;
+
+import com.kms.utils.transaction.AfterCommit;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.sql.DataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.SQLExceptionSubclassTranslator;
+import org.springframework.jdbc.support.SQLExceptionTranslator;
+import org.springframework.stereotype.Component;
+
+// Small integer keys for the department, project and title strings repeated across contacts.
+// Entries are never changed or removed, so every node can cache them without invalidation.
+// Lookups of missing values are cached briefly too, since another node may add them any time.
+// Services add the values they are about to save with ensure() before their transaction starts,
+// so the converter finds them cached while Hibernate flushes.
+@Component
+public class ContactDictionary {
+
+  private static final Logger logger = LoggerFactory.getLogger(ContactDictionary.class);
+
+  // Filters can name any value, so only the most recent misses are kept
+  private static final int MAX_MISSES = 10_000;
+  private static final long MISS_TTL_NANOS = Duration.ofSeconds(30).toNanos();
+
+  private final DataSource dataSource;
+  private final JdbcTemplate jdbcTemplate;
+  private final SQLExceptionTranslator exceptionTranslator = new SQLExceptionSubclassTranslator();
+  private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+  private final Map<Integer, String> values = new ConcurrentHashMap<>();
+
+  // When each missing value was looked up, in least recently used order
+  private final Map<String, Long> misses =
+      Collections.synchronizedMap(
+          new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+              return size() > MAX_MISSES;
+            }
+          });
+
+  public ContactDictionary(DataSource dataSource, JdbcTemplate jdbcTemplate) {
+    this.dataSource = dataSource;
+    this.jdbcTemplate = jdbcTemplate;
+  }
+
+  // Adds the value when it is new. That only happens for contacts saved without going through
+  // ContactService, and then on the caller's own connection rather than a second one from the
+  // pool, which concurrent flushes could exhaust. The key is cached once that transaction commits.
+  public Integer id(String value) {
+    Integer id = ids.get(value);
+    if (id != null) {
+      return id;
+    }
+    jdbcTemplate.update(
+        "INSERT INTO contact_dictionary (value) VALUES (?) ON CONFLICT DO NOTHING", value);
+    // A separate statement, so it sees a row that a concurrent transaction committed meanwhile
+    Integer added =
+        jdbcTemplate.queryForObject(
+            "SELECT id FROM contact_dictionary WHERE value = ?", Integer.class, value);
+    AfterCommit.run(() -> put(value, added));
+    return added;
+  }
+
+  // Never adds the value, for lookups such as filters
+  public Optional<Integer> find(String value) {
+    Integer id = ids.get(value);
+    if (id != null) {
+      return Optional.of(id);
+    }
+    Long missedAt = misses.get(value);
+    if (missedAt != null && System.nanoTime() - missedAt < MISS_TTL_NANOS) {
+      return Optional.empty();
+    }
+    load("SELECT id, value FROM contact_dictionary WHERE value = ?", value);
+    id = ids.get(value);
+    if (id == null) {
+      misses.put(value, System.nanoTime());
+    }
+    return Optional.ofNullable(id);
+  }
+
+  // The given values that have an entry, in their given order
+  public List<String> known(Collection<String> values) {
+    return values.stream().filter(value -> find(value).isPresent()).toList();
+  }
+
+  public String value(Integer id) {
+    String value = values.get(id);
+    if (value == null) {
+      load("SELECT id, value FROM contact_dictionary WHERE id = ?", id);
+      value = values.get(id);
+    }
+    if (value == null) {
+      throw new IllegalStateException("Contact dictionary has no entry with id: " + id);
+    }
+    return value;
+  }
+
+  // Adds the missing values on a connection of its own that commits right away, so a key handed
+  // out here never disappears with the rollback of the caller's transaction. Call it outside
+  // transactions, inside one it holds a second pooled connection.
+  public void ensure(Collection<String> newValues) {
+    List<String> missing =
+        newValues.stream()
+            .filter(Objects::nonNull)
+            .filter(v -> !ids.containsKey(v))
+            .distinct()
+            .toList();
+    if (missing.isEmpty()) {
+      return;
+    }
+
+    String sql = "INSERT INTO contact_dictionary (value) SELECT unnest(?) ON CONFLICT DO NOTHING";
+    try (Connection connection = dataSource.getConnection()) {
+      connection.setAutoCommit(true);
+      Array array = connection.createArrayOf("text", missing.toArray());
+      try (PreparedStatement insert = connection.prepareStatement(sql)) {
+        insert.setArray(1, array);
+        insert.executeUpdate();
+      }
+      sql = "SELECT id, value FROM contact_dictionary WHERE value = ANY(?)";
+      try (PreparedStatement select = connection.prepareStatement(sql)) {
+        select.setArray(1, array);
+        cache(select);
+      }
+      logger.debug("Contact dictionary holds {} values", ids.size());
+    } catch (SQLException e) {
+      throw exceptionTranslator.translate("Add contact dictionary values", sql, e);
+    }
+  }
+
+  // Adds the titles, departments and projects of contacts about to be saved
+  public void ensureValuesOf(Collection<Contact> contacts) {
+    List<String> contactValues = new ArrayList<>();
+    for (Contact contact : contacts) {
+      contactValues.add(contact.getTitle());
+      contactValues.add(contact.getDepartment());
+      contactValues.add(contact.getProject());
+    }
+    ensure(contactValues);
+  }
+
+  private void load(String sql, Object key) {
+    try (Connection connection = dataSource.getConnection();
+        PreparedStatement select = connection.prepareStatement(sql)) {
+      select.setObject(1, key);
+      cache(select);
+    } catch (SQLException e) {
+      throw exceptionTranslator.translate("Read contact dictionary", sql, e);
+    }
+  }
+
+  private void cache(PreparedStatement select) throws SQLException {
+    try (ResultSet rows = select.executeQuery()) {
+      while (rows.next()) {
+        put(rows.getString(2), rows.getInt(1));
+      }
+    }
+  }
+
+  private void put(String value, Integer id) {
+    ids.put(value, id);
+    values.put(id, value);
+    misses.remove(value);
+  }
+}
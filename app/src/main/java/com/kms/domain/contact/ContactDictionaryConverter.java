@@ -0,0 +1,24 @@
+package com.kms.domain.contact;
+
+import jakarta.persistence.AttributeConverter;
+
+// Stores a string column as its key in the contact dictionary. Hibernate creates the converter
+// through Spring, which injects the dictionary.
+public class ContactDictionaryConverter implements AttributeConverter<String, Integer> {
+
+  private final ContactDictionary contactDictionary;
+
+  public ContactDictionaryConverter(ContactDictionary contactDictionary) {
+    this.contactDictionary = contactDictionary;
+  }
+
+  @Override
+  public Integer convertToDatabaseColumn(String value) {
+    return value == null ? null : contactDictionary.id(value);
+  }
+
+  @Override
+  public String convertToEntityAttribute(Integer id) {
+    return id == null ? null : contactDictionary.value(id);
+  }
+}
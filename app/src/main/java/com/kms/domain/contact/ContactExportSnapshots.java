@@ -0,0 +1,313 @@
+package com.kms.domain.contact;
+
+import com.kms.domain.contact.dto.ContactExportFormat;
+import com.kms.domain.contact.dto.ContactExportRequest;
+import com.kms.utils.version.CollectionVersions;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.ServletWebRequest;
+
+// Serves the full CSV export from gzip files on local disk, one per version of the contacts.
+// Contact writes bump the version, and the first download after a change starts building the
+// new snapshot in the background. Until it is ready downloads get the live export, afterwards
+// every download of an unchanged directory is a plain file transfer that clients can resume.
+@Service
+public class ContactExportSnapshots {
+
+  private static final Logger logger = LoggerFactory.getLogger(ContactExportSnapshots.class);
+
+  private static final Pattern SNAPSHOT_NAME = Pattern.compile("contacts-(\\d+)\\.csv\\.gz");
+  private static final Pattern BYTE_RANGE = Pattern.compile("bytes=(\\d*)-(\\d*)");
+
+  // Tomcat sends the file with sendfile once the request returns when these are set
+  private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+  private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+  private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+  private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+  // Snapshots kept on disk, the previous one stays for downloads that are still running
+  private static final int KEPT_SNAPSHOTS = 2;
+
+  private final ContactExporter contactExporter;
+  private final CollectionVersions collectionVersions;
+  private final Path directory;
+  private final ThreadPoolTaskExecutor executor;
+  // Version whose snapshot is being built, null when no build runs
+  private final AtomicReference<String> building = new AtomicReference<>();
+
+  public ContactExportSnapshots(
+      ContactExporter contactExporter,
+      CollectionVersions collectionVersions,
+      @Value("${contacts.export.snapshot-dir:${java.io.tmpdir}/contact-exports}") Path directory) {
+    this.contactExporter = contactExporter;
+    this.collectionVersions = collectionVersions;
+    this.directory = directory;
+
+    // One build at a time, requests never wait for it
+    this.executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(1);
+    executor.setMaxPoolSize(1);
+    executor.setThreadNamePrefix("contact-export-");
+    executor.initialize();
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    executor.shutdown();
+  }
+
+  // The unfiltered CSV export with all columns is the same for every caller, so it is the one
+  // served from the snapshot
+  public static boolean covers(ContactExportRequest request) {
+    return (request.getFormat() == null
+            || ContactExportFormat.parse(request.getFormat()) == ContactExportFormat.CSV)
+        && isEmpty(request.getDepartments())
+        && isEmpty(request.getProjects())
+        && isEmpty(request.getTitles())
+        && (request.getColumns() == null || request.getColumns().isBlank());
+  }
+
+  // Serves GET /contacts/export for a request the snapshot covers. The file is sent gzip encoded
+  // to clients that accept it, and decompressed on the fly to the others.
+  public void export(
+      ContactExportRequest exportRequest, HttpServletRequest request, HttpServletResponse response)
+      throws IOException {
+    String version = collectionVersions.current(ContactService.COLLECTION);
+    Path snapshot = version == null ? null : ready(version);
+    if (snapshot == null) {
+      contactExporter.export(exportRequest, response);
+      return;
+    }
+
+    String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+    boolean encoded =
+        exportRequest.isGzip() || (acceptEncoding != null && acceptEncoding.contains("gzip"));
+    // The two encodings are different representations, so they get different ETags
+    String etag = "\"contacts-export-" + version + (encoded ? "-gzip" : "") + "\"";
+    response.setHeader(HttpHeaders.CACHE_CONTROL, "private, no-cache");
+    response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+    if (new ServletWebRequest(request, response).checkNotModified(etag)) {
+      return;
+    }
+
+    response.setContentType(ContactExportFormat.CSV.getContentType());
+    response.setHeader(
+        "Content-Disposition",
+        "attachment; filename=contacts." + ContactExportFormat.CSV.getExtension());
+    if (encoded) {
+      response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+      send(snapshot, etag, request, response);
+      return;
+    }
+    try (InputStream in = new GZIPInputStream(Files.newInputStream(snapshot), 8192)) {
+      in.transferTo(response.getOutputStream());
+    }
+  }
+
+  // Serves GET /contacts/export/snapshot, the snapshot file itself
+  public void serve(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    String version = collectionVersions.current(ContactService.COLLECTION);
+    Path snapshot = version == null ? null : ready(version);
+    if (snapshot == null) {
+      // Without the version there is no telling whether a snapshot is current
+      contactExporter.export(
+          new ContactExportRequest(null, null, null, null, null, true), response);
+      return;
+    }
+
+    String etag = "\"contacts-export-" + version + "\"";
+    response.setHeader(HttpHeaders.CACHE_CONTROL, "private, no-cache");
+    if (new ServletWebRequest(request, response).checkNotModified(etag)) {
+      return;
+    }
+
+    response.setContentType("application/gzip");
+    response.setHeader(
+        "Content-Disposition", "attachment; filename=contacts-" + version + ".csv.gz");
+    send(snapshot, etag, request, response);
+  }
+
+  // Sends the file or the single byte range the request asks for
+  private static void send(
+      Path snapshot, String etag, HttpServletRequest request, HttpServletResponse response)
+      throws IOException {
+    long length = Files.size(snapshot);
+    long start = 0;
+    long end = length - 1;
+    response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+    // A Range is only honored while the client still has this version, as If-Range tells
+    String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+    long[] range =
+        ifRange == null || ifRange.equals(etag)
+            ? parseRange(request.getHeader(HttpHeaders.RANGE), length)
+            : null;
+    if (range != null && range.length == 0) {
+      response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+      response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+      return;
+    }
+    if (range != null) {
+      start = range[0];
+      end = range[1];
+      response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+      response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+    }
+    response.setContentLengthLong(end - start + 1);
+
+    if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+      request.setAttribute(SENDFILE_FILENAME, snapshot.toAbsolutePath().toString());
+      request.setAttribute(SENDFILE_START, start);
+      request.setAttribute(SENDFILE_END, end + 1);
+      return;
+    }
+    transfer(snapshot, start, end - start + 1, response.getOutputStream());
+  }
+
+  // Returns the snapshot of the version, or null after starting its build when it does not exist
+  private Path ready(String version) {
+    Path snapshot = snapshotPath(version);
+    if (Files.exists(snapshot)) {
+      return snapshot;
+    }
+    if (building.compareAndSet(null, version)) {
+      try {
+        executor.execute(() -> build(version));
+      } catch (TaskRejectedException e) {
+        building.set(null);
+        logger.warn("Could not start building contact export snapshot {}", version, e);
+      }
+    }
+    return null;
+  }
+
+  private void build(String version) {
+    Path snapshot = snapshotPath(version);
+    try {
+      if (Files.exists(snapshot)) {
+        return;
+      }
+      Files.createDirectories(directory);
+      Path temporary = Files.createTempFile(directory, "contacts-", ".tmp");
+      try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(temporary), 8192)) {
+        int exported = contactExporter.write(new ContactExportRequest(), out);
+        logger.debug("Built contact export snapshot {} with {} contacts", version, exported);
+      } catch (IOException | RuntimeException e) {
+        Files.deleteIfExists(temporary);
+        throw e;
+      }
+      Files.move(temporary, snapshot, StandardCopyOption.ATOMIC_MOVE);
+      deleteOldSnapshots();
+    } catch (IOException | RuntimeException e) {
+      logger.warn("Could not build contact export snapshot {}", version, e);
+    } finally {
+      building.set(null);
+    }
+  }
+
+  private Path snapshotPath(String version) {
+    return directory.resolve("contacts-" + version + ".csv.gz");
+  }
+
+  private static boolean isEmpty(List<String> values) {
+    return values == null || values.isEmpty();
+  }
+
+  private void deleteOldSnapshots() {
+    try (Stream<Path> files = Files.list(directory)) {
+      List<Path> snapshots =
+          files
+              .filter(file -> SNAPSHOT_NAME.matcher(file.getFileName().toString()).matches())
+              .sorted(Comparator.comparingLong(ContactExportSnapshots::version).reversed())
+              .skip(KEPT_SNAPSHOTS)
+              .toList();
+      for (Path snapshot : snapshots) {
+        Files.deleteIfExists(snapshot);
+      }
+    } catch (IOException e) {
+      logger.warn("Could not delete old contact export snapshots in {}", directory, e);
+    }
+  }
+
+  private static long version(Path snapshot) {
+    Matcher matcher = SNAPSHOT_NAME.matcher(snapshot.getFileName().toString());
+    return matcher.matches() ? Long.parseLong(matcher.group(1)) : 0;
+  }
+
+  // Returns the first and last byte of a single byte range, null to send the whole file and an
+  // empty array when the range lies outside the file
+  private static long[] parseRange(String header, long length) {
+    if (header == null) {
+      return null;
+    }
+    Matcher matcher = BYTE_RANGE.matcher(header.trim());
+    if (!matcher.matches() || (matcher.group(1).isEmpty() && matcher.group(2).isEmpty())) {
+      // Multiple or malformed ranges, the whole file is a valid answer to both
+      return null;
+    }
+
+    long start;
+    long end;
+    try {
+      if (matcher.group(1).isEmpty()) {
+        // Suffix range, the last N bytes
+        start = Math.max(0, length - Long.parseLong(matcher.group(2)));
+        end = length - 1;
+      } else {
+        start = Long.parseLong(matcher.group(1));
+        end =
+            matcher.group(2).isEmpty()
+                ? length - 1
+                : Math.min(Long.parseLong(matcher.group(2)), length - 1);
+      }
+    } catch (NumberFormatException e) {
+      return null;
+    }
+    if (start >= length || start > end) {
+      return new long[0];
+    }
+    return new long[] {start, end};
+  }
+
+  // Fallback for containers without sendfile, copies the range to the response with transferTo
+  private static void transfer(Path snapshot, long position, long count, OutputStream out)
+      throws IOException {
+    try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+      WritableByteChannel target = Channels.newChannel(out);
+      long sent = 0;
+      while (sent < count) {
+        long written = channel.transferTo(position + sent, count - sent, target);
+        if (written <= 0) {
+          break;
+        }
+        sent += written;
+      }
+    }
+  }
+}
@@ -0,0 +1,232 @@
+package com.kms.domain.contact;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kms.domain.contact.dto.ContactExportFormat;
+import com.kms.domain.contact.dto.ContactExportRequest;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.hibernate.jpa.HibernateHints;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+// Exports contacts as CSV, NDJSON or XLSX. Filters and the column list go into a single query,
+// whose rows are written to the response while they are read from the database cursor.
+@Service
+public class ContactExporter {
+
+  private static final Logger logger = LoggerFactory.getLogger(ContactExporter.class);
+
+  // Contact fields in their default output order
+  public static final List<String> COLUMNS =
+      List.of(
+          "id", "firstName", "lastName", "title", "department", "project", "avatar", "employeeId");
+
+  private static final CSVFormat CSV_FORMAT =
+      CSVFormat.DEFAULT.builder().setRecordSeparator('\n').build();
+
+  // Rows the XLSX writer keeps in memory, older rows are flushed to a temporary file
+  private static final int XLSX_WINDOW_SIZE = 100;
+
+  private final EntityManager entityManager;
+  private final ObjectMapper objectMapper;
+  private final ContactDictionary contactDictionary;
+
+  public ContactExporter(
+      EntityManager entityManager, ObjectMapper objectMapper, ContactDictionary contactDictionary) {
+    this.entityManager = entityManager;
+    this.objectMapper = objectMapper;
+    this.contactDictionary = contactDictionary;
+  }
+
+  // The cursor only streams inside a transaction on PostgreSQL
+  @Transactional(readOnly = true)
+  public void export(ContactExportRequest request, HttpServletResponse response) {
+    ContactExportFormat format = ContactExportFormat.parse(request.getFormat());
+    List<String> columns = parseColumns(request.getColumns());
+    boolean gzip = request.isGzip() && format != ContactExportFormat.XLSX;
+
+    response.setContentType(format.getContentType());
+    response.setHeader(
+        "Content-Disposition", "attachment; filename=contacts." + format.getExtension());
+    if (gzip) {
+      response.setHeader("Content-Encoding", "gzip");
+    }
+
+    try (OutputStream out = openStream(response, gzip)) {
+      write(request, out);
+    } catch (IOException e) {
+      logger.debug("Failed to export contacts to {} file", format);
+      throw new RuntimeException("Failed to export contacts to " + format + " file", e);
+    }
+  }
+
+  // Writes the export to the stream without closing it, returns the number of contacts written
+  @Transactional(readOnly = true)
+  public int write(ContactExportRequest request, OutputStream out) throws IOException {
+    ContactExportFormat format = ContactExportFormat.parse(request.getFormat());
+    List<String> columns = parseColumns(request.getColumns());
+
+    try (Stream<Tuple> rows = query(request, columns)) {
+      Iterator<Tuple> iterator = rows.iterator();
+      int exported =
+          switch (format) {
+            case CSV -> writeCsv(iterator, columns, out);
+            case NDJSON -> writeNdjson(iterator, columns, out);
+            case XLSX -> writeXlsx(iterator, columns, out);
+          };
+      logger.debug("Successfully exported {} contacts to {} file", exported, format);
+      return exported;
+    }
+  }
+
+  public static List<String> parseColumns(String columns) {
+    if (columns == null || columns.isBlank()) {
+      return COLUMNS;
+    }
+    List<String> selected = new ArrayList<>();
+    for (String column : columns.split(",")) {
+      String name = column.trim();
+      if (!COLUMNS.contains(name)) {
+        throw new IllegalArgumentException("Unknown contact field: " + name);
+      }
+      if (!selected.contains(name)) {
+        selected.add(name);
+      }
+    }
+    return selected;
+  }
+
+  // Selects only the requested columns, so rows come back as plain values, not managed entities
+  private Stream<Tuple> query(ContactExportRequest request, List<String> columns) {
+    CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+    CriteriaQuery<Tuple> query = builder.createTupleQuery();
+    Root<Contact> contact = query.from(Contact.class);
+
+    List<Selection<?>> selections = new ArrayList<>();
+    for (String column : columns) {
+      selections.add(contact.get(column).alias(column));
+    }
+    List<Predicate> predicates = new ArrayList<>();
+    addFilter(builder, predicates, contact, "department", request.getDepartments());
+    addFilter(builder, predicates, contact, "project", request.getProjects());
+    addFilter(builder, predicates, contact, "title", request.getTitles());
+
+    query
+        .multiselect(selections)
+        .where(predicates.toArray(new Predicate[0]))
+        .orderBy(builder.asc(contact.get("id")));
+    return entityManager
+        .createQuery(query)
+        .setHint(HibernateHints.HINT_FETCH_SIZE, 1000)
+        .getResultStream();
+  }
+
+  // Filter values go through the dictionary converter, so unknown ones are dropped here instead of
+  // being added to the dictionary by a read
+  private void addFilter(
+      CriteriaBuilder builder,
+      List<Predicate> predicates,
+      Root<Contact> contact,
+      String field,
+      List<String> values) {
+    if (values != null && !values.isEmpty()) {
+      List<String> known = contactDictionary.known(values);
+      predicates.add(known.isEmpty() ? builder.disjunction() : contact.get(field).in(known));
+    }
+  }
+
+  private static OutputStream openStream(HttpServletResponse response, boolean gzip)
+      throws IOException {
+    OutputStream out = response.getOutputStream();
+    return gzip ? new GZIPOutputStream(out, 8192) : out;
+  }
+
+  private static int writeCsv(Iterator<Tuple> rows, List<String> columns, OutputStream out)
+      throws IOException {
+    CSVPrinter printer =
+        new CSVPrinter(
+            new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)), CSV_FORMAT);
+    printer.printRecord(columns);
+    // Send the header right away so the download starts before the first row is read
+    printer.flush();
+
+    int exported = 0;
+    while (rows.hasNext()) {
+      printer.printRecord(rows.next().toArray());
+      exported++;
+    }
+    printer.flush();
+    return exported;
+  }
+
+  private int writeNdjson(Iterator<Tuple> rows, List<String> columns, OutputStream out)
+      throws IOException {
+    JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+    int exported = 0;
+    while (rows.hasNext()) {
+      Tuple row = rows.next();
+      generator.writeStartObject();
+      for (int i = 0; i < columns.size(); i++) {
+        generator.writeObjectField(columns.get(i), row.get(i));
+      }
+      generator.writeEndObject();
+      generator.writeRaw('\n');
+      exported++;
+    }
+    generator.flush();
+    return exported;
+  }
+
+  private static int writeXlsx(Iterator<Tuple> rows, List<String> columns, OutputStream out)
+      throws IOException {
+    try (SXSSFWorkbook workbook = new SXSSFWorkbook(XLSX_WINDOW_SIZE)) {
+      Sheet sheet = workbook.createSheet("Contacts");
+      Row header = sheet.createRow(0);
+      for (int i = 0; i < columns.size(); i++) {
+        header.createCell(i).setCellValue(columns.get(i));
+      }
+
+      int exported = 0;
+      while (rows.hasNext()) {
+        Tuple tuple = rows.next();
+        Row row = sheet.createRow(++exported);
+        for (int i = 0; i < columns.size(); i++) {
+          Object value = tuple.get(i);
+          Cell cell = row.createCell(i);
+          if (value instanceof Number number) {
+            cell.setCellValue(number.doubleValue());
+          } else if (value != null) {
+            cell.setCellValue(value.toString());
+          }
+        }
+      }
+      workbook.write(out);
+      return exported;
+    }
+  }
+}
@@ -0,0 +1,185 @@
+package com.kms.domain.contact;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kms.domain.contact.dto.ContactImportJob;
+import com.kms.domain.contact.dto.ContactImportReport;
+import com.kms.utils.version.CollectionVersions;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+// Runs contact imports in the background. The upload is spooled to local disk so the request
+// returns at once, and the job state lives in Redis so any node can answer status requests.
+@Service
+public class ContactImportJobs {
+
+  private static final Logger logger = LoggerFactory.getLogger(ContactImportJobs.class);
+
+  private final ContactCsvImporter contactCsvImporter;
+  private final CollectionVersions collectionVersions;
+  private final RedisTemplate<String, String> redisTemplate;
+  private final ObjectMapper objectMapper;
+  private final ThreadPoolTaskExecutor executor;
+  private final Duration retention;
+
+  public ContactImportJobs(
+      ContactCsvImporter contactCsvImporter,
+      CollectionVersions collectionVersions,
+      RedisTemplate<String, String> redisTemplate,
+      ObjectMapper objectMapper,
+      @Value("${contacts.import.threads:2}") int threads,
+      @Value("${contacts.import.queue-capacity:10}") int queueCapacity,
+      @Value("${contacts.import.retention:P1D}") Duration retention) {
+    this.contactCsvImporter = contactCsvImporter;
+    this.collectionVersions = collectionVersions;
+    this.redisTemplate = redisTemplate;
+    this.objectMapper = objectMapper;
+    this.retention = retention;
+
+    // Bounded on both threads and queue, so a burst of uploads is turned away instead of
+    // competing with request handling for database connections
+    this.executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(threads);
+    executor.setMaxPoolSize(threads);
+    executor.setQueueCapacity(queueCapacity);
+    executor.setThreadNamePrefix("contact-import-");
+    executor.setWaitForTasksToCompleteOnShutdown(true);
+    executor.setAwaitTerminationSeconds(60);
+    executor.initialize();
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    executor.shutdown();
+  }
+
+  public ContactImportJob submit(MultipartFile file) {
+    ContactImportJob job = new ContactImportJob();
+    job.setJobId(UUID.randomUUID().toString());
+    job.setStatus(ContactImportJob.Status.QUEUED);
+    job.setFileName(file.getOriginalFilename());
+    job.setSubmittedAt(Instant.now());
+
+    Path spool;
+    try {
+      spool = Files.createTempFile("contact-import-" + job.getJobId(), ".csv");
+      file.transferTo(spool);
+    } catch (IOException e) {
+      logger.debug("Could not spool the upload of contact import {}", job.getJobId());
+      throw new RuntimeException("Failed to import contacts from CSV file", e);
+    }
+
+    save(job);
+    try {
+      executor.execute(() -> run(job, spool));
+    } catch (TaskRejectedException e) {
+      delete(spool);
+      redisTemplate.delete(key(job.getJobId()));
+      logger.debug("Contact import {} rejected, the import queue is full", job.getJobId());
+      throw e;
+    }
+
+    logger.debug("Contact import {} queued for file {}", job.getJobId(), job.getFileName());
+    return job;
+  }
+
+  public ContactImportJob get(String jobId) {
+    String json = redisTemplate.opsForValue().get(key(jobId));
+    if (json == null) {
+      throw new NoSuchElementException("Import job not found with id: " + jobId);
+    }
+    try {
+      return objectMapper.readValue(json, ContactImportJob.class);
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException("Import job " + jobId + " cannot be read", e);
+    }
+  }
+
+  private void run(ContactImportJob job, Path spool) {
+    Instant startedAt = Instant.now();
+    job.setStatus(ContactImportJob.Status.RUNNING);
+    job.setStartedAt(startedAt);
+    save(job);
+
+    try (Reader reader = Files.newBufferedReader(spool, StandardCharsets.UTF_8)) {
+      ContactImportReport report =
+          contactCsvImporter.importContacts(
+              reader,
+              progress -> {
+                update(job, progress, startedAt);
+                save(job);
+              });
+
+      update(job, report, startedAt);
+      job.setStatus(ContactImportJob.Status.COMPLETED);
+      if (report.getImported() > 0) {
+        collectionVersions.bump(ContactService.COLLECTION);
+      }
+    } catch (IOException | RuntimeException e) {
+      logger.warn("Contact import {} failed", job.getJobId(), e);
+      job.setStatus(ContactImportJob.Status.FAILED);
+      job.setErrors(List.of(e.getMessage() != null ? e.getMessage() : e.toString()));
+      // Batches committed before the failure are kept, the last progress report counts them
+      if (job.getImported() > 0) {
+        collectionVersions.bump(ContactService.COLLECTION);
+      }
+    } finally {
+      job.setFinishedAt(Instant.now());
+      save(job);
+      delete(spool);
+    }
+
+    logger.debug(
+        "Contact import {} finished with {} imported and {} failed rows",
+        job.getJobId(),
+        job.getImported(),
+        job.getFailed());
+  }
+
+  private static void update(ContactImportJob job, ContactImportReport report, Instant startedAt) {
+    job.setImported(report.getImported());
+    job.setFailed(report.getFailed());
+    job.setErrors(report.getErrors());
+    double seconds = Math.max(Duration.between(startedAt, Instant.now()).toMillis(), 1) / 1000.0;
+    job.setRowsPerSecond((report.getImported() + report.getFailed()) / seconds);
+  }
+
+  private void save(ContactImportJob job) {
+    try {
+      redisTemplate
+          .opsForValue()
+          .set(key(job.getJobId()), objectMapper.writeValueAsString(job), retention);
+    } catch (JsonProcessingException | RuntimeException e) {
+      logger.warn("Could not store the state of contact import {}", job.getJobId(), e);
+    }
+  }
+
+  private static void delete(Path spool) {
+    try {
+      Files.deleteIfExists(spool);
+    } catch (IOException e) {
+      logger.warn("Could not delete spooled import file {}", spool, e);
+    }
+  }
+
+  private static String key(String jobId) {
+    return "contacts:import:" + jobId;
+  }
+}
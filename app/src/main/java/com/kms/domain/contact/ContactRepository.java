@@ -1,9 +1,16 @@
 package com.kms.domain.contact;
 
+import com.kms.domain.contact.dto.ContactSuggestion;
+import jakarta.persistence.QueryHint;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
 public interface ContactRepository extends JpaRepository<Contact, Integer> {
   Optional<Contact> findById(Integer id);
@@ -12,8 +19,33 @@ public interface ContactRepository extends JpaRepository<Contact, Integer> {
 
   List<Contact> findAll();
 
+  @Query(
+      "SELECT new com.kms.domain.contact.dto.ContactSuggestion(c.id, c.firstName, c.lastName,"
+          + " c.title, c.avatar) FROM Contact c")
+  List<ContactSuggestion> findAllSuggestions();
+
   List<Contact> findByFirstNameIgnoreCaseOrLastNameIgnoreCase(String firstName, String lastName);
 
+  // Reads through a server-side cursor in chunks of the fetch size, which PostgreSQL only honors
+  // inside a transaction
+  @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+  @Query("SELECT c FROM Contact c WHERE c.id > :after ORDER BY c.id")
+  Stream<Contact> streamAfter(@Param("after") int after, Limit limit);
+
+  @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+  @Query("SELECT c FROM Contact c WHERE c.id > :after AND c.id <= :last ORDER BY c.id")
+  Stream<Contact> streamBetween(@Param("after") int after, @Param("last") int last);
+
+  // Fields compared by the deduplicator, the first five are read by position
+  @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+  @Query(
+      "SELECT c.id, c.firstName, c.lastName, c.employeeId, c.department, c.title, c.project,"
+          + " c.avatar FROM Contact c")
+  Stream<Object[]> streamDeduplicationFields();
+
+  @Query("SELECT c.id FROM Contact c WHERE c.id > :after ORDER BY c.id")
+  List<Integer> findIdsAfter(@Param("after") int after, Limit limit);
+
   @Query("SELECT c.firstName, COUNT(c) FROM Contact c GROUP BY c.firstName")
   List<Object[]> countContactsByFirstName();
 
@@ -1,20 +1,31 @@
 package com.kms.domain.contact;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kms.domain.contact.dto.ContactExportRequest;
+import com.kms.domain.contact.dto.ContactImportReport;
+import com.kms.domain.contact.dto.ContactSuggestion;
+import com.kms.domain.contact.dto.ContactUpsertReport;
 import com.kms.domain.contact.dto.SaveContactRequest;
+import com.kms.domain.report.ReportCache;
 import com.kms.utils.appuser.AppUserService;
+import com.kms.utils.version.CollectionVersions;
+import jakarta.persistence.EntityManager;
 import jakarta.servlet.http.HttpServletResponse;
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.stream.Stream;
 import lombok.AllArgsConstructor;
-import org.apache.commons.csv.CSVFormat;
-import org.apache.commons.csv.CSVParser;
-import org.apache.commons.csv.CSVRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
 @Service
@@ -23,8 +34,26 @@ public class ContactService {
 
   private static final Logger logger = LoggerFactory.getLogger(ContactService.class);
 
+  public static final int MAX_PAGE_SIZE = 5000;
+  private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+  public static final int DEFAULT_SUGGEST_SIZE = 10;
+  public static final int MAX_SUGGEST_SIZE = 50;
+
+  // Version counter bumped on every contact write
+  public static final String COLLECTION = "contacts";
+
   private final ContactRepository contactRepository;
   private final AppUserService appUserService;
+  private final ContactCsvImporter contactCsvImporter;
+  private final ContactCsvUpserter contactCsvUpserter;
+  private final EntityManager entityManager;
+  private final CollectionVersions collectionVersions;
+  private final ContactExporter contactExporter;
+  private final ObjectMapper objectMapper;
+  private final ContactSuggestIndex contactSuggestIndex;
+  private final ReportCache reportCache;
+  private final ContactDictionary contactDictionary;
 
   public Contact getContact(int id) {
     Optional<Contact> optionalContact = contactRepository.findById(id);
@@ -52,7 +81,11 @@ public class ContactService {
 
     request.updateContact(contact);
 
-    return contactRepository.save(contact);
+    contactDictionary.ensureValuesOf(List.of(contact));
+    Contact saved = contactRepository.save(contact);
+    collectionVersions.bump(COLLECTION);
+    contactSuggestIndex.put(saved);
+    return saved;
   }
 
   public Contact deleteContact(int contactId) {
@@ -67,13 +100,77 @@ public class ContactService {
 
     logger.debug("Contact with ID {} is deleted", contactId);
     contactRepository.deleteById(contactId);
+    collectionVersions.bump(COLLECTION);
+    contactSuggestIndex.remove(contactId);
     return response;
   }
 
-  public List<Contact> getAllContacts() {
-    List<Contact> contacts = contactRepository.findAll();
-    logger.debug("All contacts are retrieved");
-    return contacts;
+  // Streams the contacts as a JSON array from a database cursor, so memory use does not grow
+  // with the directory. With a limit, the cursor of the next page goes in the X-Next-Cursor
+  // header, which has to be known before the first row is written.
+  @Transactional(readOnly = true)
+  public void writeContacts(
+      Integer after, Integer limit, String fields, HttpServletResponse response) {
+    List<String> selected = ContactExporter.parseColumns(fields);
+    int cursor = after == null ? 0 : after;
+    Limit rows = Limit.unlimited();
+    Integer next = null;
+
+    if (limit != null) {
+      if (limit < 1) {
+        throw new IllegalArgumentException("limit must be a positive number");
+      }
+      int pageSize = Math.min(limit, MAX_PAGE_SIZE);
+      // Fetch one extra ID to find out whether another page follows
+      List<Integer> ids = contactRepository.findIdsAfter(cursor, Limit.of(pageSize + 1));
+      if (ids.size() > pageSize) {
+        next = ids.get(pageSize - 1);
+        response.setHeader(NEXT_CURSOR_HEADER, String.valueOf(next));
+      }
+      rows = Limit.of(pageSize);
+    }
+
+    response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+    int written = 0;
+    // The rows end at the cursor, so a contact deleted since the IDs were read does not pull rows
+    // of the next page into this one
+    try (Stream<Contact> contacts =
+            next == null
+                ? contactRepository.streamAfter(cursor, rows)
+                : contactRepository.streamBetween(cursor, next);
+        JsonGenerator generator =
+            objectMapper.getFactory().createGenerator(response.getOutputStream())) {
+      generator.writeStartArray();
+      for (Contact contact : (Iterable<Contact>) contacts::iterator) {
+        generator.writeStartObject();
+        for (String field : selected) {
+          generator.writeObjectField(field, fieldValue(contact, field));
+        }
+        generator.writeEndObject();
+        // Keep the persistence context from holding every listed contact
+        entityManager.detach(contact);
+        written++;
+      }
+      generator.writeEndArray();
+    } catch (IOException e) {
+      logger.debug("Failed to write the contact list after {} rows", written);
+      throw new RuntimeException("Failed to write the contact list", e);
+    }
+    logger.debug("{} contacts after ID {} are retrieved", written, cursor);
+  }
+
+  private static Object fieldValue(Contact contact, String field) {
+    return switch (field) {
+      case "id" -> contact.getId();
+      case "firstName" -> contact.getFirstName();
+      case "lastName" -> contact.getLastName();
+      case "title" -> contact.getTitle();
+      case "department" -> contact.getDepartment();
+      case "project" -> contact.getProject();
+      case "avatar" -> contact.getAvatar();
+      case "employeeId" -> contact.getEmployeeId();
+      default -> throw new IllegalArgumentException("Unknown contact field: " + field);
+    };
   }
 
   public List<Contact> addContacts(List<SaveContactRequest> saveContactRequests) {
@@ -87,7 +184,11 @@ public class ContactService {
 
     logger.debug("{} new contacts are added", contacts.size());
 
-    return contactRepository.saveAll(contacts);
+    contactDictionary.ensureValuesOf(contacts);
+    List<Contact> saved = contactRepository.saveAll(contacts);
+    collectionVersions.bump(COLLECTION);
+    saved.forEach(contactSuggestIndex::put);
+    return saved;
   }
 
   public List<Contact> getContactsByName(String name) {
@@ -104,28 +205,31 @@ public class ContactService {
     return contacts;
   }
 
-  public List<Contact> importContacts(MultipartFile file) {
-    List<Contact> contacts = new ArrayList<>();
-
-    try (Reader reader = new InputStreamReader(file.getInputStream());
-        CSVParser csvParser = new CSVParser(reader, CSVFormat.DEFAULT.withFirstRecordAsHeader())) {
-
-      for (CSVRecord csvRecord : csvParser) {
-        Contact contact = new Contact();
-        contact.setFirstName(csvRecord.get("firstName"));
-        contact.setLastName(csvRecord.get("lastName"));
-        contact.setTitle(csvRecord.get("title"));
-        contact.setDepartment(csvRecord.get("department"));
-        contact.setProject(csvRecord.get("project"));
-        contact.setAvatar(csvRecord.get("avatar"));
-        contact.setEmployeeId(Integer.parseInt(csvRecord.get("employeeId")));
+  public List<ContactSuggestion> suggestContacts(String query, Integer limit) {
+    int size = limit == null ? DEFAULT_SUGGEST_SIZE : limit;
+    if (size < 1) {
+      throw new IllegalArgumentException("limit must be a positive number");
+    }
+    List<ContactSuggestion> suggestions =
+        contactSuggestIndex.suggest(query, Math.min(size, MAX_SUGGEST_SIZE));
+    logger.debug("Found {} contact suggestions for {}", suggestions.size(), query);
+    return suggestions;
+  }
 
-        contacts.add(contact);
-      }
+  public ContactImportReport importContacts(MultipartFile file) {
+    try (Reader reader =
+        new BufferedReader(new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8))) {
+      ContactImportReport report = contactCsvImporter.importContacts(reader);
 
       logger.debug(
-          "Successfully imported {} contacts from file {}", contacts.size(), file.getName());
-      return contactRepository.saveAll(contacts);
+          "Imported {} contacts from file {}, {} rows failed",
+          report.getImported(),
+          file.getName(),
+          report.getFailed());
+      if (report.getImported() > 0) {
+        collectionVersions.bump(COLLECTION);
+      }
+      return report;
 
     } catch (IOException e) {
       logger.debug("There was an error while importing the {}", file.getName());
@@ -133,44 +237,35 @@ public class ContactService {
     }
   }
 
-  public void exportContacts(HttpServletResponse response) {
-    try {
-      List<Contact> contacts = contactRepository.findAll();
-
-      response.setContentType("text/csv");
-      response.setHeader("Content-Disposition", "attachment; filename=contacts.csv");
-
-      StringBuilder csvContent = new StringBuilder();
-      csvContent.append("id,firstName,lastName,title,department,project,avatar,employeeId\n");
-
-      for (Contact contact : contacts) {
-        csvContent
-            .append(contact.getId())
-            .append(",")
-            .append(contact.getFirstName())
-            .append(",")
-            .append(contact.getLastName())
-            .append(",")
-            .append(contact.getTitle())
-            .append(",")
-            .append(contact.getDepartment())
-            .append(",")
-            .append(contact.getProject())
-            .append(",")
-            .append(contact.getAvatar())
-            .append(",")
-            .append(contact.getEmployeeId())
-            .append("\n");
+  public ContactUpsertReport upsertContacts(MultipartFile file) {
+    try (BufferedReader reader =
+        new BufferedReader(new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8))) {
+      ContactUpsertReport report = contactCsvUpserter.upsertContacts(reader);
+
+      logger.debug(
+          "Upserted contacts from file {}: {} inserted, {} updated, {} rows failed",
+          file.getName(),
+          report.getInserted(),
+          report.getUpdated(),
+          report.getFailed());
+      if (report.getInserted() > 0 || report.getUpdated() > 0) {
+        collectionVersions.bump(COLLECTION);
+        // The upsert writes with SQL, so no entity listener saw the changes
+        reportCache.invalidate("contact");
       }
+      return report;
 
-      // Write the CSV content to the response
-      PrintWriter writer = response.getWriter();
-      writer.write(csvContent.toString());
-      writer.flush();
-      logger.debug("Successfully exported {} contacts to CSV file", contacts.size());
     } catch (IOException e) {
-      logger.debug("Failed to export contacts to CSV file");
-      throw new RuntimeException("Failed to export contacts to CSV file", e);
+      logger.debug("There was an error while importing the {}", file.getName());
+      throw new RuntimeException("Failed to import contacts from CSV file", e);
     }
   }
+
+  public void exportContacts(HttpServletResponse response) {
+    exportContacts(new ContactExportRequest(), response);
+  }
+
+  public void exportContacts(ContactExportRequest request, HttpServletResponse response) {
+    contactExporter.export(request, response);
+  }
 }
@@ -0,0 +1,147 @@
+package com.kms.domain.contact;
+
+import com.kms.domain.contact.dto.ContactSuggestion;
+import com.kms.utils.transaction.AfterCommit;
+import com.kms.utils.version.CollectionVersions;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+// Prefix index over contact names for typeahead, so suggestions never query PostgreSQL. Each
+// contact is filed under its first name, last name and full name, normalized to lower case
+// without accents, in a sorted map where a prefix lookup is a range scan.
+@Component
+public class ContactSuggestIndex {
+
+  private static final Logger logger = LoggerFactory.getLogger(ContactSuggestIndex.class);
+
+  // Separates the name from the contact ID in a key, sorts before any name character
+  private static final char SEPARATOR = '\u0000';
+
+  private final ContactRepository contactRepository;
+  private final CollectionVersions collectionVersions;
+
+  private volatile Index index = new Index();
+
+  // Version of the contacts the index was last loaded at
+  private volatile String loadedVersion;
+
+  public ContactSuggestIndex(
+      ContactRepository contactRepository, CollectionVersions collectionVersions) {
+    this.contactRepository = contactRepository;
+    this.collectionVersions = collectionVersions;
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void rebuild() {
+    String version = collectionVersions.current(ContactService.COLLECTION);
+    Index rebuilt = new Index();
+    for (ContactSuggestion contact : contactRepository.findAllSuggestions()) {
+      rebuilt.put(contact);
+    }
+    index = rebuilt;
+    loadedVersion = version;
+    logger.debug("Contact suggest index holds {} contacts", rebuilt.contacts.size());
+  }
+
+  // Imports and writes on other nodes only bump the contacts version, so reload when it moved
+  @Scheduled(fixedDelayString = "${contacts.suggest.refresh:PT1M}")
+  public void refresh() {
+    String version = collectionVersions.current(ContactService.COLLECTION);
+    if (version != null && !version.equals(loadedVersion)) {
+      rebuild();
+    }
+  }
+
+  public List<ContactSuggestion> suggest(String query, int limit) {
+    String prefix = normalize(query);
+    if (prefix.isEmpty()) {
+      return List.of();
+    }
+
+    // A contact can match on several of its names, keep the first (closest) match only
+    Map<Integer, ContactSuggestion> matches = new LinkedHashMap<>();
+    for (ContactSuggestion contact :
+        index.terms.subMap(prefix, true, prefix + Character.MAX_VALUE, true).values()) {
+      matches.putIfAbsent(contact.getId(), contact);
+      if (matches.size() == limit) {
+        break;
+      }
+    }
+    return new ArrayList<>(matches.values());
+  }
+
+  // Applied once the write commits, so a rolled back write never shows up in suggestions
+  public void put(Contact contact) {
+    ContactSuggestion suggestion =
+        new ContactSuggestion(
+            contact.getId(),
+            contact.getFirstName(),
+            contact.getLastName(),
+            contact.getTitle(),
+            contact.getAvatar());
+    AfterCommit.run(() -> index.put(suggestion));
+  }
+
+  public void remove(int contactId) {
+    AfterCommit.run(() -> index.remove(contactId));
+  }
+
+  static String normalize(String name) {
+    if (name == null) {
+      return "";
+    }
+    String decomposed = Normalizer.normalize(name.trim(), Normalizer.Form.NFD);
+    return decomposed
+        .replaceAll("\\p{M}", "")
+        .replace('\u0111', 'd')
+        .replace('\u0110', 'D')
+        .toLowerCase(Locale.ROOT);
+  }
+
+  private static final class Index {
+
+    private final ConcurrentNavigableMap<String, ContactSuggestion> terms =
+        new ConcurrentSkipListMap<>();
+    private final Map<Integer, ContactSuggestion> contacts = new ConcurrentHashMap<>();
+
+    synchronized void put(ContactSuggestion contact) {
+      remove(contact.getId());
+      contacts.put(contact.getId(), contact);
+      for (String term : terms(contact)) {
+        terms.put(term + SEPARATOR + contact.getId(), contact);
+      }
+    }
+
+    synchronized void remove(int contactId) {
+      ContactSuggestion previous = contacts.remove(contactId);
+      if (previous != null) {
+        for (String term : terms(previous)) {
+          terms.remove(term + SEPARATOR + contactId);
+        }
+      }
+    }
+
+    private static List<String> terms(ContactSuggestion contact) {
+      String firstName = normalize(contact.getFirstName());
+      String lastName = normalize(contact.getLastName());
+      return Stream.of(firstName, lastName, (firstName + " " + lastName).trim())
+          .filter(term -> !term.isEmpty())
+          .distinct()
+          .toList();
+    }
+  }
+}
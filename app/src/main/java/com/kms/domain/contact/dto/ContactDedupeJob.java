@@ -0,0 +1,45 @@
+package com.kms.domain.contact.dto;
+
+import java.time.Instant;
+import java.util.List;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+public class ContactDedupeJob {
+
+  public enum Status {
+    QUEUED,
+    RUNNING,
+    COMPLETED,
+    FAILED,
+    // Proposals are being merged, set before the merge starts so only one request applies them
+    APPLYING,
+    APPLIED
+  }
+
+  private String jobId;
+
+  private Status status;
+
+  private int contacts;
+
+  // Candidate pairs that shared a blocking key and were scored
+  private long pairs;
+
+  // Blocks left out because their key is too common to compare every pair
+  private int skippedBlocks;
+
+  // Ordered by score, highest first
+  private List<ContactMergeProposal> proposals = List.of();
+
+  // Reason the job failed
+  private String error;
+
+  private Instant submittedAt;
+
+  private Instant startedAt;
+
+  private Instant finishedAt;
+}
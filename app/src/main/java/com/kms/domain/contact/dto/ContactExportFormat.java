@@ -0,0 +1,29 @@
+package com.kms.domain.contact.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public enum ContactExportFormat {
+  CSV("csv", "text/csv"),
+  NDJSON("ndjson", "application/x-ndjson"),
+  XLSX("xlsx", "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
+
+  private final String extension;
+
+  private final String contentType;
+
+  // Case insensitive, CSV when no format is given
+  public static ContactExportFormat parse(String format) {
+    if (format == null || format.isBlank()) {
+      return CSV;
+    }
+    for (ContactExportFormat value : values()) {
+      if (value.name().equalsIgnoreCase(format.trim())) {
+        return value;
+      }
+    }
+    throw new IllegalArgumentException("Unknown export format: " + format);
+  }
+}
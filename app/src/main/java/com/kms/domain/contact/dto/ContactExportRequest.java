@@ -0,0 +1,28 @@
+package com.kms.domain.contact.dto;
+
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ContactExportRequest {
+
+  // csv, ndjson or xlsx, csv when null
+  private String format;
+
+  // Each filter keeps the contacts matching any of its values, a null or empty filter keeps all
+  private List<String> departments;
+
+  private List<String> projects;
+
+  private List<String> titles;
+
+  // Comma separated columns in output order, all columns when null
+  private String columns;
+
+  // Ignored for xlsx, which is already compressed
+  private boolean gzip;
+}
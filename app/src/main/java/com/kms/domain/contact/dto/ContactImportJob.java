@@ -0,0 +1,40 @@
+package com.kms.domain.contact.dto;
+
+import java.time.Instant;
+import java.util.List;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+public class ContactImportJob {
+
+  public enum Status {
+    QUEUED,
+    RUNNING,
+    COMPLETED,
+    FAILED
+  }
+
+  private String jobId;
+
+  private Status status;
+
+  private String fileName;
+
+  private int imported;
+
+  private int failed;
+
+  // Rows processed per second since the job started
+  private double rowsPerSecond;
+
+  // Row errors as in ContactImportReport, or the reason the whole job failed
+  private List<String> errors = List.of();
+
+  private Instant submittedAt;
+
+  private Instant startedAt;
+
+  private Instant finishedAt;
+}
@@ -0,0 +1,18 @@
+package com.kms.domain.contact.dto;
+
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class ContactImportReport {
+
+  private int imported;
+
+  private int failed;
+
+  // One message per rejected row, prefixed with the row's 1-based position below the header.
+  // Only the first ContactCsvImporter.MAX_REPORTED_ERRORS messages are kept.
+  private List<String> errors;
+}
@@ -0,0 +1,20 @@
+package com.kms.domain.contact.dto;
+
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// A group of contacts that look like the same person, merged into the one to keep
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ContactMergeProposal {
+
+  private Integer keepId;
+
+  private List<Integer> duplicateIds;
+
+  // Lowest similarity between two contacts that put them in this group, from 0 to 1
+  private double score;
+}
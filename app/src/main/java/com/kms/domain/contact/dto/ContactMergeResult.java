@@ -0,0 +1,16 @@
+package com.kms.domain.contact.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class ContactMergeResult {
+
+  private int merged;
+
+  private int deleted;
+
+  // Proposals left alone because one of their contacts no longer exists
+  private int skipped;
+}
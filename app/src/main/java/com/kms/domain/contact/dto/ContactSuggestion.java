@@ -0,0 +1,22 @@
+package com.kms.domain.contact.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// The few contact fields a people picker shows for each match
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ContactSuggestion {
+
+  private Integer id;
+
+  private String firstName;
+
+  private String lastName;
+
+  private String title;
+
+  private String avatar;
+}
@@ -0,0 +1,22 @@
+package com.kms.domain.contact.dto;
+
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class ContactUpsertReport {
+
+  // Rows whose employee ID was not in the database yet
+  private int inserted;
+
+  // Existing contacts whose fields changed, rows that match the database as is are not counted
+  private int updated;
+
+  private int failed;
+
+  // One message per rejected row, prefixed with the row's 1-based position below the header.
+  // Only the first ContactCsvImporter.MAX_REPORTED_ERRORS messages are kept.
+  private List<String> errors;
+}
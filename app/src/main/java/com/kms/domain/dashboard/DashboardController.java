@@ -11,10 +11,15 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import jakarta.validation.Valid;
 import java.util.List;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 
 public interface DashboardController {
 
-  @Operation(summary = "Get all dashboards for the current user")
+  @Operation(
+      summary = "Get all dashboards for the current user",
+      description =
+          "Send the returned ETag in If-None-Match to get a 304 while the dashboards are"
+              + " unchanged")
   @ApiResponses({
     @ApiResponse(
         responseCode = "200",
@@ -23,6 +28,7 @@ public interface DashboardController {
             @Content(
                 mediaType = "application/json",
                 schema = @Schema(implementation = Dashboard.class))),
+    @ApiResponse(responseCode = "304", description = "The dashboards have not changed"),
     @ApiResponse(
         responseCode = "500",
         description = "Error retrieving requested dashboards",
@@ -32,7 +38,7 @@ public interface DashboardController {
                 schema = @Schema(implementation = ErrorResponse.class)))
   })
   @GetMapping
-  List<Dashboard> getAllDashboards();
+  List<Dashboard> getAllDashboards(ServletWebRequest webRequest);
 
   @Operation(summary = "Update an existing dashboard or create a new one")
   @ApiResponses({
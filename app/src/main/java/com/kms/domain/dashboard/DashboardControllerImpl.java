@@ -3,11 +3,13 @@ package com.kms.domain.dashboard;
 import com.kms.domain.dashboard.dto.SaveDashboardRequest;
 import com.kms.utils.appuser.AppUserService;
 import com.kms.utils.jwt.JWTUtils;
+import com.kms.utils.version.CollectionVersions;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import java.util.List;
 import lombok.AllArgsConstructor;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 
 @RestController
 @RequestMapping("/dashboards")
@@ -18,10 +20,14 @@ public class DashboardControllerImpl implements DashboardController {
   private final DashboardService dashboardService;
   private final AppUserService appUserService;
   private final JWTUtils jwtUtils;
+  private final CollectionVersions collectionVersions;
 
   @Override
-  public List<Dashboard> getAllDashboards() {
+  public List<Dashboard> getAllDashboards(ServletWebRequest webRequest) {
     int userId = Integer.parseInt(jwtUtils.getUserIdFromToken());
+    if (collectionVersions.isNotModified(DashboardService.collection(userId), webRequest)) {
+      return null;
+    }
     return dashboardService.getDashboards(userId);
   }
 
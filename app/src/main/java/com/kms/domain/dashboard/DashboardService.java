@@ -5,6 +5,7 @@ import com.kms.domain.dashboard.dto.SaveDashboardRequest;
 import com.kms.domain.user.User;
 import com.kms.domain.user.UserRepository;
 import com.kms.utils.appuser.AppUserService;
+import com.kms.utils.version.CollectionVersions;
 import jakarta.transaction.Transactional;
 import java.util.List;
 import java.util.Optional;
@@ -25,6 +26,12 @@ public class DashboardService {
   private final WidgetRepository widgetRepository;
   private final ObjectMapper objectMapper;
   private final UserRepository userRepository;
+  private final CollectionVersions collectionVersions;
+
+  // Name of the version counter bumped on every write to a user's dashboards
+  static String collection(int userId) {
+    return "dashboards:" + userId;
+  }
 
   List<Dashboard> getDashboards(int userId) {
     List<Dashboard> dashboards = dashboardRepository.findByUser_Id(userId);
@@ -37,17 +44,21 @@ public class DashboardService {
     Optional<Dashboard> optionalDashboard =
         dashboardRepository.findByIdAndUser_Id(dashboardId, userId);
 
+    Dashboard saved;
     if (optionalDashboard.isPresent()) {
       Dashboard dashboard = optionalDashboard.get();
       logger.debug(
           "Dashboard with ID {} found. Updating the existing dashboard with ID {}.",
           userId,
           dashboardId);
-      return updateDashboard(dashboard, saveDashboardRequest, userId);
+      saved = updateDashboard(dashboard, saveDashboardRequest, userId);
     } else {
       logger.debug("Dashboard with ID {} not found. Creating a new dashboard.", dashboardId);
-      return createDashboard(saveDashboardRequest, userId);
+      saved = createDashboard(saveDashboardRequest, userId);
     }
+
+    collectionVersions.bump(collection(userId));
+    return saved;
   }
 
   @Transactional
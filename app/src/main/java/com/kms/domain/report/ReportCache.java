@@ -0,0 +1,141 @@
+package com.kms.domain.report;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kms.utils.version.CollectionVersions;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+// Caches report results in Redis under the generation of the reported collection, which writes
+// bump, the same way TaskCache does for task reads. Identical misses arriving while the report is
+// computed wait for that computation instead of running the query again.
+@Component
+public class ReportCache {
+
+  private static final Logger logger = LoggerFactory.getLogger(ReportCache.class);
+
+  private final RedisTemplate<String, String> redisTemplate;
+  private final ObjectMapper objectMapper;
+  private final CollectionVersions collectionVersions;
+  private final Duration ttl;
+  private final Counter hits;
+  private final Counter misses;
+  private final Counter coalesced;
+
+  // Reports being computed on this node, by cache key
+  private final ConcurrentHashMap<String, CompletableFuture<Object>> inFlight =
+      new ConcurrentHashMap<>();
+
+  public ReportCache(
+      RedisTemplate<String, String> redisTemplate,
+      ObjectMapper objectMapper,
+      CollectionVersions collectionVersions,
+      MeterRegistry meterRegistry,
+      @Value("${reports.cache.ttl:PT10M}") Duration ttl) {
+    this.redisTemplate = redisTemplate;
+    this.objectMapper = objectMapper;
+    this.collectionVersions = collectionVersions;
+    this.ttl = ttl;
+    this.hits = meterRegistry.counter("reports.cache.requests", "result", "hit");
+    this.misses = meterRegistry.counter("reports.cache.requests", "result", "miss");
+    this.coalesced = meterRegistry.counter("reports.cache.requests", "result", "coalesced");
+  }
+
+  // Name of the generation counter of a reported collection
+  static String generation(String collection) {
+    return "reports:" + collection;
+  }
+
+  // The query identifies the report within the collection, including its filters
+  public <T> T get(String collection, String query, TypeReference<T> type, Supplier<T> loader) {
+    String version = collectionVersions.current(generation(collection));
+    if (version == null) {
+      misses.increment();
+      return loader.get();
+    }
+
+    String key = "reports:" + collection + ":" + version + ":" + query;
+    try {
+      String cached = redisTemplate.opsForValue().get(key);
+      if (cached != null) {
+        hits.increment();
+        return objectMapper.readValue(cached, type);
+      }
+    } catch (RuntimeException | JsonProcessingException e) {
+      logger.warn("Report cache read failed for {}, using the database", key, e);
+    }
+
+    CompletableFuture<Object> computation = new CompletableFuture<>();
+    CompletableFuture<Object> running = inFlight.putIfAbsent(key, computation);
+    if (running != null) {
+      coalesced.increment();
+      return await(running);
+    }
+
+    misses.increment();
+    try {
+      T value = loader.get();
+      try {
+        redisTemplate.opsForValue().set(key, objectMapper.writeValueAsString(value), ttl);
+      } catch (RuntimeException | JsonProcessingException e) {
+        logger.warn("Report cache write failed for {}", key, e);
+      }
+      computation.complete(value);
+      return value;
+    } catch (Throwable e) {
+      // Waiting requests fail the same way, e.g. with the 400 of an unknown field. Errors complete
+      // the computation too, or the requests waiting on it would never return.
+      computation.completeExceptionally(e);
+      throw e;
+    } finally {
+      inFlight.remove(key, computation);
+    }
+  }
+
+  // Bumps the generation once per transaction, after it commits, however many rows it wrote
+  public void invalidate(String collection) {
+    String generation = generation(collection);
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      if (TransactionSynchronizationManager.hasResource(generation)) {
+        return;
+      }
+      TransactionSynchronizationManager.bindResource(generation, Boolean.TRUE);
+      TransactionSynchronizationManager.registerSynchronization(
+          new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+              TransactionSynchronizationManager.unbindResourceIfPossible(generation);
+            }
+          });
+    }
+    collectionVersions.bump(generation);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T> T await(CompletableFuture<Object> running) {
+    try {
+      return (T) running.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      if (e.getCause() instanceof Error error) {
+        throw error;
+      }
+      throw e;
+    }
+  }
+}
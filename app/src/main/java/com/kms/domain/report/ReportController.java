@@ -1,5 +1,9 @@
 package com.kms.domain.report;
 
+import com.kms.domain.report.dto.ReportDistinct;
+import com.kms.domain.report.dto.ReportHistogram;
+import com.kms.domain.report.dto.ReportQuery;
+import com.kms.domain.report.dto.ReportQueryResult;
 import com.kms.domain.report.dto.ReportResponse;
 import com.kms.exceptions.ErrorResponse;
 import io.swagger.v3.oas.annotations.Operation;
@@ -8,8 +12,13 @@ import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
 
 public interface ReportController {
 
@@ -50,5 +59,171 @@ public interface ReportController {
           @PathVariable
           String collection,
       @Parameter(description = "The field to count by", example = "isCompleted") @PathVariable
+          String field,
+      @Parameter(
+              description = "Return only this many most frequent values, at most 1000",
+              example = "10")
+          @RequestParam(required = false)
+          Integer limit);
+
+  @Operation(summary = "Get an estimate of the number of distinct values of a field")
+  @ApiResponses({
+    @ApiResponse(
+        responseCode = "200",
+        description = "Successfully counted the distinct values",
+        content =
+            @Content(
+                mediaType = "application/json",
+                schema = @Schema(implementation = ReportDistinct.class))),
+    @ApiResponse(
+        responseCode = "400",
+        description = "Distinct counts are unavailable for the field",
+        content =
+            @Content(
+                mediaType = "application/json",
+                schema = @Schema(implementation = ErrorResponse.class))),
+    @ApiResponse(
+        responseCode = "404",
+        description = "Collection not found",
+        content =
+            @Content(
+                mediaType = "application/json",
+                schema = @Schema(implementation = ErrorResponse.class))),
+    @ApiResponse(
+        responseCode = "500",
+        description = "Internal server error",
+        content =
+            @Content(
+                mediaType = "application/json",
+                schema = @Schema(implementation = ErrorResponse.class)))
+  })
+  @GetMapping("/reports/_distinct/{collection}/{field}")
+  ReportDistinct distinct(
+      @Parameter(description = "The collection to count values in", example = "contact")
+          @PathVariable
+          String collection,
+      @Parameter(description = "The field whose values are counted", example = "lastName")
+          @PathVariable
           String field);
+
+  @Operation(summary = "Group a collection by several fields with filters and aggregates")
+  @ApiResponses({
+    @ApiResponse(
+        responseCode = "200",
+        description = "Successfully computed the report",
+        content =
+            @Content(
+                mediaType = "application/json",
+                schema = @Schema(implementation = ReportQueryResult.class))),
+    @ApiResponse(
+        responseCode = "400",
+        description = "Invalid field, filter value or aggregate, or too many groups",
+        content =
+            @Content(
+                mediaType = "application/json",
+                schema = @Schema(implementation = ErrorResponse.class))),
+    @ApiResponse(
+        responseCode = "404",
+        description = "Collection not found",
+        content =
+            @Content(
+                mediaType = "application/json",
+                schema = @Schema(implementation = ErrorResponse.class))),
+    @ApiResponse(
+        responseCode = "500",
+        description = "Internal server error",
+        content =
+            @Content(
+                mediaType = "application/json",
+                schema = @Schema(implementation = ErrorResponse.class)))
+  })
+  @PostMapping("/reports/_query")
+  ReportQueryResult query(@RequestBody ReportQuery query);
+
+  @Operation(summary = "Count records per hour, day or week of one of their timestamps")
+  @ApiResponses({
+    @ApiResponse(
+        responseCode = "200",
+        description = "Successfully computed the histogram",
+        content =
+            @Content(
+                mediaType = "application/json",
+                schema = @Schema(implementation = ReportHistogram.class))),
+    @ApiResponse(
+        responseCode = "400",
+        description = "Invalid field, interval, time range or zone",
+        content =
+            @Content(
+                mediaType = "application/json",
+                schema = @Schema(implementation = ErrorResponse.class))),
+    @ApiResponse(
+        responseCode = "404",
+        description = "Collection not found",
+        content =
+            @Content(
+                mediaType = "application/json",
+                schema = @Schema(implementation = ErrorResponse.class))),
+    @ApiResponse(
+        responseCode = "500",
+        description = "Internal server error",
+        content =
+            @Content(
+                mediaType = "application/json",
+                schema = @Schema(implementation = ErrorResponse.class)))
+  })
+  @GetMapping("/reports/_histogram/{collection}/{field}")
+  ReportHistogram histogram(
+      @Parameter(description = "The collection to count records from", example = "task")
+          @PathVariable
+          String collection,
+      @Parameter(description = "The timestamp to bucket by", example = "completedAt") @PathVariable
+          String field,
+      @Parameter(description = "HOUR, DAY or WEEK, DAY when left out", example = "DAY")
+          @RequestParam(required = false)
+          String interval,
+      @Parameter(
+              description = "Start of the range, 30 buckets before its end when left out",
+              example = "2024-08-01T00:00:00Z")
+          @RequestParam(required = false)
+          String from,
+      @Parameter(
+              description =
+                  "Exclusive end of the range, the end of the current bucket when left out",
+              example = "2024-09-01T00:00:00Z")
+          @RequestParam(required = false)
+          String to,
+      @Parameter(description = "Time zone the buckets start in, UTC when left out", example = "UTC")
+          @RequestParam(required = false)
+          String zone);
+
+  @Operation(summary = "Recount the maintained report counters of a collection from its table")
+  @ApiResponses({
+    @ApiResponse(responseCode = "204", description = "Successfully rebuilt the counters"),
+    @ApiResponse(
+        responseCode = "404",
+        description = "Collection not found",
+        content =
+            @Content(
+                mediaType = "application/json",
+                schema = @Schema(implementation = ErrorResponse.class))),
+    @ApiResponse(
+        responseCode = "409",
+        description = "Counters are unavailable for the collection",
+        content =
+            @Content(
+                mediaType = "application/json",
+                schema = @Schema(implementation = ErrorResponse.class))),
+    @ApiResponse(
+        responseCode = "500",
+        description = "Internal server error",
+        content =
+            @Content(
+                mediaType = "application/json",
+                schema = @Schema(implementation = ErrorResponse.class)))
+  })
+  @PostMapping("/reports/_countBy/{collection}/_rebuild")
+  @ResponseStatus(HttpStatus.NO_CONTENT)
+  void rebuildCounters(
+      @Parameter(description = "The collection to recount", example = "contact") @PathVariable
+          String collection);
 }
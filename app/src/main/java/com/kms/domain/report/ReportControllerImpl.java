@@ -1,9 +1,15 @@
 package com.kms.domain.report;
 
+import com.kms.domain.report.dto.ReportDistinct;
+import com.kms.domain.report.dto.ReportHistogram;
+import com.kms.domain.report.dto.ReportQuery;
+import com.kms.domain.report.dto.ReportQueryResult;
 import com.kms.domain.report.dto.ReportResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.AllArgsConstructor;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 @RestController
@@ -13,8 +19,37 @@ public class ReportControllerImpl implements ReportController {
   private final ReportService reportService;
 
   @Override
-  public ReportResponse countByField(@PathVariable String collection, @PathVariable String field) {
+  public ReportResponse countByField(
+      @PathVariable String collection,
+      @PathVariable String field,
+      @RequestParam(required = false) Integer limit) {
 
-    return reportService.countByField(collection, field);
+    return reportService.countByField(collection, field, limit);
+  }
+
+  @Override
+  public ReportDistinct distinct(@PathVariable String collection, @PathVariable String field) {
+    return reportService.distinct(collection, field);
+  }
+
+  @Override
+  public ReportQueryResult query(@RequestBody ReportQuery query) {
+    return reportService.query(query);
+  }
+
+  @Override
+  public ReportHistogram histogram(
+      @PathVariable String collection,
+      @PathVariable String field,
+      @RequestParam(required = false) String interval,
+      @RequestParam(required = false) String from,
+      @RequestParam(required = false) String to,
+      @RequestParam(required = false) String zone) {
+    return reportService.histogram(collection, field, interval, from, to, zone);
+  }
+
+  @Override
+  public void rebuildCounters(@PathVariable String collection) {
+    reportService.rebuildCounters(collection);
   }
 }
@@ -0,0 +1,350 @@
+package com.kms.domain.report;
+
+import com.kms.domain.contact.ContactDictionary;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+// Keeps the per-value counts behind /reports/_countBy in report_count, so a report reads one row
+// per distinct value instead of scanning the table. Statement level triggers append the changes of
+// every write to report_count_delta, whatever code path made it, and a scheduled job folds them
+// into report_count. Appending keeps concurrent writers from queuing on the same counter row.
+@Component
+public class ReportCounters {
+
+  private static final Logger logger = LoggerFactory.getLogger(ReportCounters.class);
+
+  // Counted columns by collection and field. Other fields are still counted with a table scan.
+  private static final Map<String, Map<String, String>> COUNTED_COLUMNS = new LinkedHashMap<>();
+
+  static {
+    // Sorted, so the generated trigger function is the same on every start
+    COUNTED_COLUMNS.put(
+        "task", new TreeMap<>(Map.of("isCompleted", "is_completed", "task", "task")));
+    COUNTED_COLUMNS.put(
+        "contact",
+        new TreeMap<>(
+            Map.of(
+                "title",
+                "title_id",
+                "department",
+                "department_id",
+                "project",
+                "project_id",
+                "firstName",
+                "first_name",
+                "lastName",
+                "last_name")));
+  }
+
+  // Columns holding contact dictionary keys, reported as their value
+  private static final Set<String> DICTIONARY_COLUMNS =
+      Set.of("title_id", "department_id", "project_id");
+
+  private final JdbcTemplate jdbcTemplate;
+  private final TransactionTemplate transactionTemplate;
+  private final ContactDictionary contactDictionary;
+
+  // Collections whose triggers are in place, the others fall back to a table scan
+  private final Set<String> installed = ConcurrentHashMap.newKeySet();
+
+  public ReportCounters(
+      JdbcTemplate jdbcTemplate,
+      PlatformTransactionManager transactionManager,
+      ContactDictionary contactDictionary) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+    this.contactDictionary = contactDictionary;
+  }
+
+  // Runs after DatabaseInitializer, which creates the contact dictionary
+  @EventListener(ApplicationReadyEvent.class)
+  public void install() {
+    try {
+      jdbcTemplate.execute(
+          "CREATE TABLE IF NOT EXISTS report_count (collection text, field text, value text,"
+              + " count bigint NOT NULL, PRIMARY KEY (collection, field, value))");
+      jdbcTemplate.execute(
+          "CREATE TABLE IF NOT EXISTS report_count_delta (collection text NOT NULL,"
+              + " field text NOT NULL, value text NOT NULL, delta bigint NOT NULL)");
+      jdbcTemplate.execute(
+          "CREATE INDEX IF NOT EXISTS idx_report_count_delta"
+              + " ON report_count_delta (collection, field)");
+      // Lets top-K reports read the largest counts without sorting every value of the field
+      jdbcTemplate.execute(
+          "CREATE INDEX IF NOT EXISTS idx_report_count_top"
+              + " ON report_count (collection, field, count DESC)");
+      for (String collection : COUNTED_COLUMNS.keySet()) {
+        installTriggers(collection);
+        installed.add(collection);
+      }
+    } catch (DataAccessException e) {
+      logger.warn("Report counters are unavailable, reports will scan the tables", e);
+    }
+  }
+
+  public Optional<Map<String, Long>> count(String collection, String field) {
+    String column = column(collection, field);
+    if (column == null || !installed.contains(collection)) {
+      return Optional.empty();
+    }
+
+    Map<String, Long> values = new HashMap<>();
+    jdbcTemplate.query(
+        "SELECT value, sum(count) FROM (SELECT value, count FROM report_count"
+            + " WHERE collection = ? AND field = ? UNION ALL SELECT value, delta"
+            + " FROM report_count_delta WHERE collection = ? AND field = ?) c"
+            + " GROUP BY value HAVING sum(count) <> 0",
+        rs -> {
+          values.put(decode(column, rs.getString(1)), rs.getLong(2));
+        },
+        collection,
+        column,
+        collection,
+        column);
+    return Optional.of(values);
+  }
+
+  // The values with the highest counts, largest first. Candidates are the top of the folded counts
+  // plus every value with pending changes, so the read stays proportional to the limit. A value
+  // outside twice the limit that overtakes the others before the next compaction can be missed.
+  public Optional<Map<String, Long>> top(String collection, String field, int limit) {
+    String column = column(collection, field);
+    if (column == null || !installed.contains(collection)) {
+      return Optional.empty();
+    }
+
+    Map<String, Long> values = new LinkedHashMap<>();
+    jdbcTemplate.query(
+        "SELECT value, sum(count) FROM ("
+            + "(SELECT value, count FROM report_count WHERE collection = ? AND field = ?"
+            + " ORDER BY count DESC LIMIT ?)"
+            + " UNION SELECT value, count FROM report_count WHERE collection = ? AND field = ?"
+            + " AND value IN (SELECT value FROM report_count_delta"
+            + " WHERE collection = ? AND field = ?)"
+            + " UNION ALL SELECT value, delta FROM report_count_delta"
+            + " WHERE collection = ? AND field = ?) c"
+            + " GROUP BY value HAVING sum(count) > 0 ORDER BY sum(count) DESC, value LIMIT ?",
+        rs -> {
+          values.put(decode(column, rs.getString(1)), rs.getLong(2));
+        },
+        collection,
+        column,
+        limit * 2,
+        collection,
+        column,
+        collection,
+        column,
+        collection,
+        column,
+        limit);
+    return Optional.of(values);
+  }
+
+  // Recounts a collection from its table, for counts that drifted through a disabled trigger or a
+  // restore. Writers wait for the recount instead of being lost between the scan and the swap.
+  public void rebuild(String collection) {
+    if (!COUNTED_COLUMNS.containsKey(collection)) {
+      throw new NoSuchElementException("Collection '" + collection + "' not found");
+    }
+    if (!installed.contains(collection)) {
+      throw new IllegalStateException("Report counters are unavailable for '" + collection + "'");
+    }
+    transactionTemplate.executeWithoutResult(status -> recount(collection));
+  }
+
+  // Folds the appended changes into one row per value and drops values that reached zero
+  @Scheduled(fixedDelayString = "${reports.counters.compact-interval:PT10S}")
+  public void compact() {
+    if (installed.isEmpty()) {
+      return;
+    }
+    try {
+      Integer folded =
+          transactionTemplate.execute(
+              status -> {
+                lockCounters();
+                int moved =
+                    jdbcTemplate.update(
+                        "WITH moved AS (DELETE FROM report_count_delta"
+                            + " RETURNING collection, field, value, delta)"
+                            + " INSERT INTO report_count (collection, field, value, count)"
+                            + " SELECT collection, field, value, sum(delta) FROM moved"
+                            + " GROUP BY collection, field, value"
+                            + " ON CONFLICT (collection, field, value)"
+                            + " DO UPDATE SET count = report_count.count + excluded.count");
+                jdbcTemplate.update("DELETE FROM report_count WHERE count = 0");
+                return moved;
+              });
+      if (folded != null && folded > 0) {
+        logger.debug("Folded report counter changes into {} values", folded);
+      }
+    } catch (DataAccessException e) {
+      logger.warn("Report counter compaction failed, retrying on the next run", e);
+    }
+  }
+
+  private String decode(String column, String value) {
+    return DICTIONARY_COLUMNS.contains(column)
+        ? contactDictionary.value(Integer.valueOf(value))
+        : value;
+  }
+
+  private static String column(String collection, String field) {
+    Map<String, String> columns = COUNTED_COLUMNS.get(collection);
+    return columns == null ? null : columns.get(field);
+  }
+
+  // Serializes compaction and rebuilds, so neither folds changes the other has just dropped
+  private void lockCounters() {
+    jdbcTemplate.queryForList("SELECT pg_advisory_xact_lock(hashtext('report_count'))");
+  }
+
+  private void recount(String collection) {
+    jdbcTemplate.execute("LOCK TABLE " + collection + " IN SHARE MODE");
+    lockCounters();
+    jdbcTemplate.update("DELETE FROM report_count WHERE collection = ?", collection);
+    jdbcTemplate.update("DELETE FROM report_count_delta WHERE collection = ?", collection);
+    for (String column : COUNTED_COLUMNS.get(collection).values()) {
+      jdbcTemplate.update(
+          "INSERT INTO report_count (collection, field, value, count) SELECT ?, ?, "
+              + column
+              + "::text, count(*) FROM "
+              + collection
+              + " WHERE "
+              + column
+              + " IS NOT NULL GROUP BY "
+              + column,
+          collection,
+          column);
+    }
+    logger.debug("Report counters of collection '{}' rebuilt", collection);
+  }
+
+  // Replaces the trigger function when its counted columns changed and recounts the collection when
+  // the triggers were missing, e.g. after Hibernate recreated the table
+  private void installTriggers(String collection) {
+    String function = "report_count_" + collection;
+    String body = functionBody(collection);
+    transactionTemplate.executeWithoutResult(
+        status -> {
+          // Unlike SHARE, this mode conflicts with itself, so nodes starting together install one
+          // after the other instead of deadlocking on the triggers
+          jdbcTemplate.execute("LOCK TABLE " + collection + " IN SHARE ROW EXCLUSIVE MODE");
+          String current =
+              jdbcTemplate
+                  .queryForList(
+                      "SELECT prosrc FROM pg_proc WHERE proname = ?", String.class, function)
+                  .stream()
+                  .findFirst()
+                  .orElse(null);
+          Integer triggers =
+              jdbcTemplate.queryForObject(
+                  "SELECT count(*) FROM pg_trigger WHERE tgrelid = CAST(? AS regclass)"
+                      + " AND tgname LIKE ?",
+                  Integer.class,
+                  collection,
+                  function + "\\_%");
+          if (body.equals(current) && triggers != null && triggers == 4) {
+            return;
+          }
+
+          jdbcTemplate.execute(
+              "CREATE OR REPLACE FUNCTION "
+                  + function
+                  + "() RETURNS trigger LANGUAGE plpgsql AS $$"
+                  + body
+                  + "$$");
+          createTrigger(
+              collection, "insert", "REFERENCING NEW TABLE AS new_rows FOR EACH STATEMENT");
+          createTrigger(
+              collection,
+              "update",
+              "REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows FOR EACH STATEMENT");
+          createTrigger(
+              collection, "delete", "REFERENCING OLD TABLE AS old_rows FOR EACH STATEMENT");
+          createTrigger(collection, "truncate", "FOR EACH STATEMENT");
+          recount(collection);
+          logger.debug("Report counter triggers installed on '{}'", collection);
+        });
+  }
+
+  private void createTrigger(String collection, String event, String clause) {
+    String name = "report_count_" + collection + "_" + event;
+    jdbcTemplate.execute("DROP TRIGGER IF EXISTS " + name + " ON " + collection);
+    jdbcTemplate.execute(
+        "CREATE TRIGGER "
+            + name
+            + " AFTER "
+            + event.toUpperCase(Locale.ROOT)
+            + " ON "
+            + collection
+            + " "
+            + clause
+            + " EXECUTE FUNCTION report_count_"
+            + collection
+            + "()");
+  }
+
+  // One delta row per changed value and statement, so bulk statements append few rows
+  private static String functionBody(String collection) {
+    String added = changes(collection, "new_rows", 1);
+    String removed = changes(collection, "old_rows", -1);
+    return " BEGIN"
+        + " IF TG_OP = 'TRUNCATE' THEN"
+        + " DELETE FROM report_count WHERE collection = '"
+        + collection
+        + "'; DELETE FROM report_count_delta WHERE collection = '"
+        + collection
+        + "';"
+        + " ELSIF TG_OP = 'INSERT' THEN "
+        + appendDeltas(collection, added)
+        + " ELSIF TG_OP = 'DELETE' THEN "
+        + appendDeltas(collection, removed)
+        + " ELSE "
+        + appendDeltas(collection, added + " UNION ALL " + removed)
+        + " END IF; RETURN NULL; END ";
+  }
+
+  private static String changes(String collection, String rows, int sign) {
+    StringJoiner changes = new StringJoiner(" UNION ALL ");
+    for (String column : COUNTED_COLUMNS.get(collection).values()) {
+      changes.add(
+          "SELECT '"
+              + column
+              + "' AS field, "
+              + column
+              + "::text AS value, "
+              + sign
+              + " AS delta"
+              + " FROM "
+              + rows);
+    }
+    return changes.toString();
+  }
+
+  private static String appendDeltas(String collection, String changes) {
+    return "INSERT INTO report_count_delta (collection, field, value, delta) SELECT '"
+        + collection
+        + "', field, value, sum(delta) FROM ("
+        + changes
+        + ") c WHERE value IS NOT NULL GROUP BY field, value HAVING sum(delta) <> 0;";
+  }
+}
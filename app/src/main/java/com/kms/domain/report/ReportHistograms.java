@@ -0,0 +1,129 @@
+package com.kms.domain.report;
+
+import com.kms.domain.report.dto.ReportHistogram;
+import com.kms.domain.report.dto.ReportInterval;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+// Counts records per hour, day or week of one of their timestamps. Only the requested range is
+// read, through the timestamp indexes DatabaseInitializer creates.
+@Component
+public class ReportHistograms {
+
+  private static final Logger logger = LoggerFactory.getLogger(ReportHistograms.class);
+
+  public static final int DEFAULT_BUCKETS = 30;
+  public static final int MAX_BUCKETS = 1000;
+
+  // Timestamp columns by collection and field
+  private static final Map<String, Map<String, String>> COLUMNS =
+      Map.of(
+          "task",
+          Map.of(
+              "createdAt", "created_at", "updatedAt", "updated_at", "completedAt", "completed_at"),
+          "contact",
+          Map.of("createdAt", "created_at", "updatedAt", "updated_at"));
+
+  private final JdbcTemplate jdbcTemplate;
+
+  public ReportHistograms(JdbcTemplate jdbcTemplate) {
+    this.jdbcTemplate = jdbcTemplate;
+  }
+
+  // Resolves the range before the cache is consulted. Without "to" the range ends with the current
+  // bucket, so repeated requests share a cache entry until the next bucket starts. The start is
+  // moved back to the start of its bucket.
+  static Range range(
+      String collection,
+      String field,
+      ReportInterval interval,
+      String from,
+      String to,
+      String zone) {
+    if (!COLUMNS.get(collection).containsKey(field)) {
+      throw new IllegalArgumentException(
+          "Unknown timestamp field '" + field + "' for collection '" + collection + "'");
+    }
+    ZoneId zoneId;
+    Instant start;
+    Instant end;
+    try {
+      zoneId = ZoneId.of(zone == null || zone.isBlank() ? "UTC" : zone);
+      // PostgreSQL reads "+07:00" as a POSIX zone west of UTC, so only named zones are accepted
+      if (zoneId instanceof ZoneOffset) {
+        throw new IllegalArgumentException("zone must be a region such as Europe/Paris or UTC");
+      }
+      end =
+          to == null || to.isBlank()
+              ? interval.truncate(ZonedDateTime.now(zoneId)).plus(1, interval.getUnit()).toInstant()
+              : Instant.parse(to);
+      start =
+          from == null || from.isBlank()
+              ? end.atZone(zoneId).minus(DEFAULT_BUCKETS, interval.getUnit()).toInstant()
+              : Instant.parse(from);
+    } catch (DateTimeException e) {
+      throw new IllegalArgumentException("Invalid time range or zone: " + e.getMessage(), e);
+    }
+    if (!start.isBefore(end)) {
+      throw new IllegalArgumentException("from must be before to");
+    }
+    return new Range(interval.truncate(start.atZone(zoneId)), end);
+  }
+
+  public ReportHistogram count(
+      String collection, String field, ReportInterval interval, Range range) {
+    String column = COLUMNS.get(collection).get(field);
+    ZoneId zone = range.start().getZone();
+
+    List<Instant> buckets = new ArrayList<>();
+    for (ZonedDateTime bucket = range.start();
+        bucket.toInstant().isBefore(range.end());
+        bucket = bucket.plus(1, interval.getUnit())) {
+      if (buckets.size() == MAX_BUCKETS) {
+        throw new IllegalArgumentException(
+            "A histogram has at most " + MAX_BUCKETS + " buckets, use a larger interval");
+      }
+      buckets.add(bucket.toInstant());
+    }
+
+    Map<Instant, Long> counted = new HashMap<>();
+    jdbcTemplate.query(
+        "SELECT date_trunc(?, "
+            + column
+            + ", ?), count(*) FROM "
+            + collection
+            + " WHERE "
+            + column
+            + " >= ? AND "
+            + column
+            + " < ? GROUP BY 1",
+        rs -> {
+          counted.put(rs.getObject(1, OffsetDateTime.class).toInstant(), rs.getLong(2));
+        },
+        interval.name().toLowerCase(Locale.ROOT),
+        zone.getId(),
+        range.start().toOffsetDateTime(),
+        range.end().atOffset(ZoneOffset.UTC));
+
+    List<Long> counts = buckets.stream().map(bucket -> counted.getOrDefault(bucket, 0L)).toList();
+    logger.debug(
+        "Histogram of {}.{} per {} has {} buckets", collection, field, interval, buckets.size());
+    return new ReportHistogram(collection, field, interval, zone.getId(), buckets, counts);
+  }
+
+  // Start of the first bucket in the requested zone and the exclusive end
+  record Range(ZonedDateTime start, Instant end) {}
+}
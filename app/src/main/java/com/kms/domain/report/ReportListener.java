@@ -0,0 +1,39 @@
+package com.kms.domain.report;
+
+import com.kms.domain.contact.Contact;
+import com.kms.domain.task.Task;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+
+// Keeps report state in step with entity writes, whichever code path saved them: invalidates the
+// cached reports of the entity's collection and adds its values to the distinct count sketches.
+// Hibernate creates the listener through Spring, which injects both. Bulk statements do not pass
+// through here and invalidate the cache themselves.
+public class ReportListener {
+
+  private final ReportCache reportCache;
+  private final ReportSketches reportSketches;
+
+  public ReportListener(ReportCache reportCache, ReportSketches reportSketches) {
+    this.reportCache = reportCache;
+    this.reportSketches = reportSketches;
+  }
+
+  @PostPersist
+  @PostUpdate
+  public void saved(Object entity) {
+    changed(entity);
+    reportSketches.add(entity);
+  }
+
+  // Sketches cannot forget values, the scheduled rebuild drops those of deleted entities
+  @PostRemove
+  public void changed(Object entity) {
+    if (entity instanceof Task) {
+      reportCache.invalidate("task");
+    } else if (entity instanceof Contact) {
+      reportCache.invalidate("contact");
+    }
+  }
+}
@@ -0,0 +1,223 @@
+package com.kms.domain.report;
+
+import com.kms.domain.contact.Contact;
+import com.kms.domain.contact.ContactDictionary;
+import com.kms.domain.report.dto.ReportAggregate;
+import com.kms.domain.report.dto.ReportFunction;
+import com.kms.domain.report.dto.ReportQuery;
+import com.kms.domain.report.dto.ReportQueryResult;
+import com.kms.domain.task.Task;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+// Compiles a report query into a single GROUP BY over all its dimensions, so a matrix such as
+// department by project takes one query instead of one countBy per value
+@Component
+public class ReportQueries {
+
+  private static final Logger logger = LoggerFactory.getLogger(ReportQueries.class);
+
+  public static final int MAX_DIMENSIONS = 4;
+  public static final int MAX_GROUPS = 10000;
+
+  // Fields a query may group, filter or aggregate on, by collection
+  private static final Map<String, Set<String>> FIELDS =
+      Map.of(
+          "task",
+          Set.of("id", "task", "isCompleted"),
+          "contact",
+          Set.of(
+              "id",
+              "firstName",
+              "lastName",
+              "title",
+              "department",
+              "project",
+              "avatar",
+              "employeeId"));
+
+  // Stored as contact dictionary keys, whose order says nothing about the values
+  private static final Set<String> DICTIONARY_FIELDS = Set.of("title", "department", "project");
+
+  private static final List<ReportAggregate> DEFAULT_AGGREGATES =
+      List.of(new ReportAggregate(ReportFunction.COUNT, null));
+
+  private final EntityManager entityManager;
+  private final ContactDictionary contactDictionary;
+
+  public ReportQueries(EntityManager entityManager, ContactDictionary contactDictionary) {
+    this.entityManager = entityManager;
+    this.contactDictionary = contactDictionary;
+  }
+
+  // Checks the query before it reaches the cache, so invalid ones never get a cache entry
+  static void validate(ReportQuery query) {
+    Set<String> fields = FIELDS.get(query.getCollection());
+    List<String> groupBy = query.getGroupBy() == null ? List.of() : query.getGroupBy();
+    if (groupBy.size() > MAX_DIMENSIONS) {
+      throw new IllegalArgumentException(
+          "A report query can group by at most " + MAX_DIMENSIONS + " fields");
+    }
+    groupBy.forEach(field -> checkField(query, fields, field));
+    if (query.getFilters() != null) {
+      query.getFilters().keySet().forEach(field -> checkField(query, fields, field));
+    }
+    for (ReportAggregate aggregate : aggregates(query)) {
+      if (aggregate.getFunction() == null) {
+        throw new IllegalArgumentException("Aggregate function is required");
+      }
+      if (aggregate.getFunction() == ReportFunction.COUNT) {
+        continue;
+      }
+      checkField(query, fields, aggregate.getField());
+      if (aggregate.getFunction() != ReportFunction.COUNT_DISTINCT
+          && DICTIONARY_FIELDS.contains(aggregate.getField())) {
+        throw new IllegalArgumentException(
+            aggregate.getFunction() + " is not supported on " + aggregate.getField());
+      }
+    }
+  }
+
+  @Transactional(readOnly = true)
+  public ReportQueryResult run(ReportQuery query) {
+    CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+    CriteriaQuery<Tuple> criteria = builder.createTupleQuery();
+    Class<?> entityClass = "task".equals(query.getCollection()) ? Task.class : Contact.class;
+    Root<?> root = criteria.from(entityClass);
+
+    List<String> groupBy = query.getGroupBy() == null ? List.of() : query.getGroupBy();
+    List<Expression<?>> dimensions = new ArrayList<>();
+    List<Selection<?>> selections = new ArrayList<>();
+    for (String field : groupBy) {
+      Path<?> path = root.get(field);
+      dimensions.add(path);
+      selections.add(path);
+    }
+    List<ReportAggregate> aggregates = aggregates(query);
+    for (ReportAggregate aggregate : aggregates) {
+      selections.add(aggregate(builder, root, aggregate));
+    }
+
+    List<Predicate> predicates = new ArrayList<>();
+    if (query.getFilters() != null) {
+      query
+          .getFilters()
+          .forEach((field, values) -> predicates.add(filter(builder, root, field, values)));
+    }
+
+    criteria
+        .multiselect(selections)
+        .where(predicates.toArray(new Predicate[0]))
+        .groupBy(dimensions);
+    // One extra group tells a complete result from a truncated one
+    List<Tuple> tuples =
+        new ArrayList<>(
+            entityManager.createQuery(criteria).setMaxResults(MAX_GROUPS + 1).getResultList());
+    if (tuples.size() > MAX_GROUPS) {
+      throw new IllegalArgumentException(
+          "Report has more than " + MAX_GROUPS + " groups, add filters or group by fewer fields");
+    }
+    // Sorted here rather than in SQL, where dictionary fields would sort by their keys
+    tuples.sort(byGroup(groupBy.size()));
+
+    LinkedHashMap<String, List<Object>> columns = new LinkedHashMap<>();
+    List<String> names = new ArrayList<>(groupBy);
+    aggregates.forEach(aggregate -> names.add(aggregate.column()));
+    for (int i = 0; i < names.size(); i++) {
+      List<Object> values = new ArrayList<>(tuples.size());
+      for (Tuple tuple : tuples) {
+        values.add(tuple.get(i));
+      }
+      columns.put(names.get(i), values);
+    }
+
+    logger.debug(
+        "Report query on '{}' grouped by {} returned {} groups",
+        query.getCollection(),
+        groupBy,
+        tuples.size());
+    return new ReportQueryResult(query.getCollection(), tuples.size(), columns);
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static Comparator<Tuple> byGroup(int dimensions) {
+    Comparator<Tuple> comparator = (a, b) -> 0;
+    for (int i = 0; i < dimensions; i++) {
+      int index = i;
+      comparator =
+          comparator.thenComparing(
+              tuple -> (Comparable) tuple.get(index),
+              Comparator.nullsLast(Comparator.naturalOrder()));
+    }
+    return comparator;
+  }
+
+  private static List<ReportAggregate> aggregates(ReportQuery query) {
+    return query.getAggregates() == null || query.getAggregates().isEmpty()
+        ? DEFAULT_AGGREGATES
+        : query.getAggregates();
+  }
+
+  private static void checkField(ReportQuery query, Set<String> fields, String field) {
+    if (field == null || !fields.contains(field)) {
+      throw new IllegalArgumentException(
+          "Unknown field '" + field + "' for collection '" + query.getCollection() + "'");
+    }
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static Expression<?> aggregate(
+      CriteriaBuilder builder, Root<?> root, ReportAggregate aggregate) {
+    return switch (aggregate.getFunction()) {
+      case COUNT -> builder.count(root);
+      case COUNT_DISTINCT -> builder.countDistinct(root.get(aggregate.getField()));
+      case MIN -> builder.least(root.<Comparable>get(aggregate.getField()));
+      case MAX -> builder.greatest(root.<Comparable>get(aggregate.getField()));
+    };
+  }
+
+  // Filter values are parsed to the field's type. Unknown dictionary values are dropped rather
+  // than added to the dictionary by a read.
+  private Predicate filter(
+      CriteriaBuilder builder, Root<?> root, String field, List<String> values) {
+    Path<?> path = root.get(field);
+    List<String> given =
+        values == null ? List.of() : values.stream().filter(Objects::nonNull).toList();
+    List<?> parsed =
+        DICTIONARY_FIELDS.contains(field)
+            ? contactDictionary.known(given)
+            : given.stream().map(value -> parse(path.getJavaType(), value)).toList();
+    return parsed.isEmpty() ? builder.disjunction() : path.in(parsed);
+  }
+
+  private static Object parse(Class<?> type, String value) {
+    if (type == Integer.class) {
+      return Integer.valueOf(value.trim());
+    }
+    if (type == Boolean.class) {
+      if (!"true".equals(value) && !"false".equals(value)) {
+        throw new IllegalArgumentException("Expected true or false, got '" + value + "'");
+      }
+      return Boolean.valueOf(value);
+    }
+    return value;
+  }
+}
@@ -1,7 +1,15 @@
 package com.kms.domain.report;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.kms.domain.contact.Contact;
 import com.kms.domain.contact.ContactRepository;
+import com.kms.domain.report.dto.ReportDistinct;
+import com.kms.domain.report.dto.ReportHistogram;
+import com.kms.domain.report.dto.ReportInterval;
+import com.kms.domain.report.dto.ReportQuery;
+import com.kms.domain.report.dto.ReportQueryResult;
 import com.kms.domain.report.dto.ReportResponse;
 import com.kms.domain.task.Task;
 import com.kms.domain.task.TaskRepository;
@@ -14,6 +22,7 @@ import lombok.AllArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
 
 @Service
 @AllArgsConstructor
@@ -21,28 +30,117 @@ public class ReportService {
 
   private static final Logger logger = LoggerFactory.getLogger(ReportService.class);
 
+  public static final int MAX_TOP_K = 1000;
+
+  private static final TypeReference<Map<String, Long>> COUNTS = new TypeReference<>() {};
+  private static final TypeReference<ReportQueryResult> QUERY_RESULT = new TypeReference<>() {};
+  private static final TypeReference<ReportHistogram> HISTOGRAM = new TypeReference<>() {};
+
   private final TaskRepository taskRepository;
   private final ContactRepository contactRepository;
   private final EntityManager entityManager;
+  private final ReportCounters reportCounters;
+  private final ReportCache reportCache;
+  private final ReportQueries reportQueries;
+  private final ReportHistograms reportHistograms;
+  private final ReportSketches reportSketches;
+  private final ObjectMapper objectMapper;
 
-  public ReportResponse countByField(String collection, String field) {
+  public ReportResponse countByField(String collection, String field, Integer limit) {
     logger.debug("Counting by field '{}' for collection '{}'", field, collection);
 
-    Map<String, Long> values = new HashMap<>();
-
-    if ("task".equalsIgnoreCase(collection)) {
-      values = countFieldInCollection(Task.class, field);
-    } else if ("contact".equalsIgnoreCase(collection)) {
-      values = countFieldInCollection(Contact.class, field);
-    } else {
-      logger.debug("Collection '{}' not found", collection);
-      throw new NoSuchElementException("Collection '" + collection + "' not found");
+    String name = collectionName(collection);
+    Class<?> entityClass = "task".equals(name) ? Task.class : Contact.class;
+    if (limit != null && (limit < 1 || limit > MAX_TOP_K)) {
+      throw new IllegalArgumentException("limit must be between 1 and " + MAX_TOP_K);
     }
 
+    // Maintained counters answer without scanning the table when the field has them. They also
+    // see writes that bypass the entity listener, so only the table scan is cached.
+    Map<String, Long> values =
+        limit == null
+            ? reportCounters
+                .count(name, field)
+                .orElseGet(
+                    () ->
+                        reportCache.get(
+                            name,
+                            "countBy:" + field,
+                            COUNTS,
+                            () -> countFieldInCollection(entityClass, field)))
+            : reportCounters
+                .top(name, field, limit)
+                .orElseGet(
+                    () ->
+                        reportCache.get(
+                            name,
+                            "countBy:" + field + ":top" + limit,
+                            COUNTS,
+                            () -> topFieldInCollection(entityClass, field, limit)));
+
     logger.debug("Successfully counted by field '{}' for collection '{}'", field, collection);
     return new ReportResponse(collection, field, values);
   }
 
+  public ReportDistinct distinct(String collection, String field) {
+    return reportSketches.distinct(collectionName(collection), field);
+  }
+
+  public ReportQueryResult query(ReportQuery query) {
+    if (query.getCollection() == null) {
+      throw new IllegalArgumentException("collection is required");
+    }
+    String name = collectionName(query.getCollection());
+    query.setCollection(name);
+    ReportQueries.validate(query);
+
+    // The serialized query names the report in the cache
+    String key;
+    try {
+      key = "query:" + DigestUtils.md5DigestAsHex(objectMapper.writeValueAsBytes(query));
+    } catch (JsonProcessingException e) {
+      throw new IllegalArgumentException("Invalid report query", e);
+    }
+    return reportCache.get(name, key, QUERY_RESULT, () -> reportQueries.run(query));
+  }
+
+  public ReportHistogram histogram(
+      String collection, String field, String interval, String from, String to, String zone) {
+    String name = collectionName(collection);
+    ReportInterval bucketSize = ReportInterval.parse(interval);
+    ReportHistograms.Range range = ReportHistograms.range(name, field, bucketSize, from, to, zone);
+
+    String key =
+        "histogram:"
+            + field
+            + ":"
+            + bucketSize
+            + ":"
+            + range.start().toOffsetDateTime()
+            + ":"
+            + range.end()
+            + ":"
+            + range.start().getZone();
+    return reportCache.get(
+        name, key, HISTOGRAM, () -> reportHistograms.count(name, field, bucketSize, range));
+  }
+
+  public void rebuildCounters(String collection) {
+    String name = collection.toLowerCase(Locale.ROOT);
+    reportCounters.rebuild(name);
+    reportCache.invalidate(name);
+    logger.debug("Report counters rebuilt for collection '{}'", collection);
+  }
+
+  private static String collectionName(String collection) {
+    String name = collection.toLowerCase(Locale.ROOT);
+    if (!"task".equals(name) && !"contact".equals(name)) {
+      logger.debug("Collection '{}' not found", collection);
+      throw new NoSuchElementException("Collection '" + collection + "' not found");
+    }
+    return name;
+  }
+
   private <T> Map<String, Long> countFieldInCollection(Class<T> entityClass, String field) {
     CriteriaBuilder cb = entityManager.getCriteriaBuilder();
     CriteriaQuery<Object[]> query = cb.createQuery(Object[].class);
@@ -54,6 +152,27 @@ public class ReportService {
     return mapResults(results);
   }
 
+  // Exact, for fields without counters, but it still groups the whole table
+  private <T> Map<String, Long> topFieldInCollection(
+      Class<T> entityClass, String field, int limit) {
+    CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+    CriteriaQuery<Object[]> query = cb.createQuery(Object[].class);
+
+    Root<T> root = query.from(entityClass);
+    query
+        .multiselect(root.get(field), cb.count(root))
+        .where(cb.isNotNull(root.get(field)))
+        .groupBy(root.get(field))
+        .orderBy(cb.desc(cb.count(root)));
+
+    List<Object[]> results = entityManager.createQuery(query).setMaxResults(limit).getResultList();
+    Map<String, Long> countMap = new LinkedHashMap<>();
+    for (Object[] result : results) {
+      countMap.put(result[0].toString(), (Long) result[1]);
+    }
+    return countMap;
+  }
+
   private Map<String, Long> mapResults(List<Object[]> results) {
     Map<String, Long> countMap = new HashMap<>();
     for (Object[] result : results) {
@@ -0,0 +1,324 @@
+package com.kms.domain.report;
+
+import com.kms.domain.contact.Contact;
+import com.kms.domain.report.dto.ReportDistinct;
+import com.kms.domain.task.Task;
+import jakarta.annotation.PreDestroy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.sql.DataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.SQLExceptionSubclassTranslator;
+import org.springframework.jdbc.support.SQLExceptionTranslator;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+// HyperLogLog sketches in Redis for the distinct values of high-cardinality fields, about 12 KB per
+// field however many values it has. ReportListener adds the values of every saved entity. Deleted
+// values cannot be taken out of a sketch, so the sketches are rebuilt from the tables on a
+// schedule.
+@Component
+public class ReportSketches {
+
+  private static final Logger logger = LoggerFactory.getLogger(ReportSketches.class);
+
+  private static final int BATCH_SIZE = 1000;
+
+  private static final String LOCK_KEY = "reports:hll:lock";
+  private static final Duration LOCK_TIMEOUT = Duration.ofMinutes(10);
+
+  // Deletes the lock only while it still holds the given token
+  private static final RedisScript<Long> UNLOCK =
+      RedisScript.of(
+          "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1])"
+              + " else return 0 end",
+          Long.class);
+
+  // Sketched columns by collection and field
+  private static final Map<String, Map<String, String>> COLUMNS =
+      Map.of(
+          "task",
+          Map.of("task", "task"),
+          "contact",
+          Map.of(
+              "firstName",
+              "first_name",
+              "lastName",
+              "last_name",
+              "avatar",
+              "avatar",
+              "employeeId",
+              "employee_id"));
+
+  // Values added in the current transaction, sent once it commits
+  private static final Object PENDING = new Object();
+
+  private final RedisTemplate<String, String> redisTemplate;
+  private final JdbcTemplate jdbcTemplate;
+  private final DataSource dataSource;
+  private final SQLExceptionTranslator exceptionTranslator = new SQLExceptionSubclassTranslator();
+  private final ThreadPoolTaskExecutor executor;
+
+  // Sketches queued or being built by this node
+  private final Set<String> building = ConcurrentHashMap.newKeySet();
+
+  public ReportSketches(
+      RedisTemplate<String, String> redisTemplate,
+      JdbcTemplate jdbcTemplate,
+      DataSource dataSource) {
+    this.redisTemplate = redisTemplate;
+    this.jdbcTemplate = jdbcTemplate;
+    this.dataSource = dataSource;
+
+    // One build at a time, each scans a whole table
+    this.executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(1);
+    executor.setMaxPoolSize(1);
+    executor.setThreadNamePrefix("report-sketch-");
+    executor.initialize();
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    executor.shutdown();
+  }
+
+  // Falls back to an exact count when Redis is unavailable or the sketch is not built yet
+  public ReportDistinct distinct(String collection, String field) {
+    String column = COLUMNS.get(collection).get(field);
+    if (column == null) {
+      throw new IllegalArgumentException(
+          "Distinct counts are available for "
+              + COLUMNS.get(collection).keySet()
+              + " of collection '"
+              + collection
+              + "'");
+    }
+
+    try {
+      String builtAt = redisTemplate.opsForValue().get(builtKey(collection, field));
+      if (builtAt == null) {
+        // The first read starts building the sketch, reads count exactly until it is ready
+        buildLater(collection, field);
+        return exact(collection, field, column);
+      }
+      Long count = redisTemplate.opsForHyperLogLog().size(key(collection, field));
+      return new ReportDistinct(
+          collection, field, count == null ? 0 : count, true, Instant.parse(builtAt));
+    } catch (RuntimeException e) {
+      logger.warn("Distinct count sketch of {}.{} failed, counting exactly", collection, field, e);
+      return exact(collection, field, column);
+    }
+  }
+
+  public void add(Object entity) {
+    if (entity instanceof Task task) {
+      add("task", "task", task.getTask());
+    } else if (entity instanceof Contact contact) {
+      add("contact", "firstName", contact.getFirstName());
+      add("contact", "lastName", contact.getLastName());
+      add("contact", "avatar", contact.getAvatar());
+      add("contact", "employeeId", contact.getEmployeeId());
+    }
+  }
+
+  // Only one node rebuilds, the others skip the run while the lock is held
+  @Scheduled(
+      initialDelayString = "${reports.sketches.rebuild:PT1H}",
+      fixedDelayString = "${reports.sketches.rebuild:PT1H}")
+  public void rebuildAll() {
+    try {
+      String token = lock();
+      if (token == null) {
+        return;
+      }
+      try {
+        COLUMNS.forEach((collection, fields) -> fields.keySet().forEach(f -> build(collection, f)));
+      } finally {
+        unlock(token);
+      }
+    } catch (RuntimeException e) {
+      logger.warn("Distinct count sketch rebuild failed, retrying on the next run", e);
+    }
+  }
+
+  // Builds the sketch in the background unless this node already does, or another one holds the
+  // lock. A skipped build is started again by the next read that finds no sketch.
+  private void buildLater(String collection, String field) {
+    String key = key(collection, field);
+    if (!building.add(key)) {
+      return;
+    }
+    try {
+      executor.execute(
+          () -> {
+            try {
+              String token = lock();
+              if (token != null) {
+                try {
+                  build(collection, field);
+                } finally {
+                  unlock(token);
+                }
+              }
+            } catch (RuntimeException e) {
+              logger.warn("Distinct count sketch of {}.{} failed to build", collection, field, e);
+            } finally {
+              building.remove(key);
+            }
+          });
+    } catch (TaskRejectedException e) {
+      building.remove(key);
+      logger.warn("Distinct count sketch of {}.{} could not be queued", collection, field, e);
+    }
+  }
+
+  private ReportDistinct exact(String collection, String field, String column) {
+    Long count =
+        jdbcTemplate.queryForObject(
+            "SELECT count(DISTINCT " + column + ") FROM " + collection, Long.class);
+    return new ReportDistinct(collection, field, count == null ? 0 : count, false, null);
+  }
+
+  // Returns the token that owns the lock, or null when another build holds it
+  private String lock() {
+    String token = UUID.randomUUID().toString();
+    Boolean locked = redisTemplate.opsForValue().setIfAbsent(LOCK_KEY, token, LOCK_TIMEOUT);
+    return Boolean.TRUE.equals(locked) ? token : null;
+  }
+
+  // A build that outlived the timeout must not release the lock another node has taken since
+  private void unlock(String token) {
+    redisTemplate.execute(UNLOCK, List.of(LOCK_KEY), token);
+  }
+
+  private static String key(String collection, String field) {
+    return "reports:hll:" + collection + ":" + field;
+  }
+
+  private static String builtKey(String collection, String field) {
+    return key(collection, field) + ":built";
+  }
+
+  // Fills a new sketch from the table in batches and swaps it in, so readers never see a partial
+  // one. Values saved while it is filled may be missing until the next rebuild.
+  private void build(String collection, String field) {
+    String column = COLUMNS.get(collection).get(field);
+    String sketch = key(collection, field) + ":" + UUID.randomUUID();
+    String sql =
+        "SELECT " + column + "::text FROM " + collection + " WHERE " + column + " IS NOT NULL";
+    boolean empty = true;
+    boolean renamed = false;
+
+    try {
+      // A connection of its own, outside autocommit, so the driver streams rows with a cursor
+      try (Connection connection = dataSource.getConnection()) {
+        connection.setAutoCommit(false);
+        connection.setReadOnly(true);
+        try (PreparedStatement select = connection.prepareStatement(sql)) {
+          select.setFetchSize(BATCH_SIZE);
+          try (ResultSet rows = select.executeQuery()) {
+            List<String> batch = new ArrayList<>(BATCH_SIZE);
+            while (rows.next()) {
+              batch.add(rows.getString(1));
+              if (batch.size() == BATCH_SIZE) {
+                redisTemplate.opsForHyperLogLog().add(sketch, batch.toArray(new String[0]));
+                batch.clear();
+                empty = false;
+              }
+            }
+            if (!batch.isEmpty()) {
+              redisTemplate.opsForHyperLogLog().add(sketch, batch.toArray(new String[0]));
+              empty = false;
+            }
+          }
+        } finally {
+          connection.rollback();
+        }
+      } catch (SQLException e) {
+        throw exceptionTranslator.translate("Build distinct count sketch", sql, e);
+      }
+
+      if (empty) {
+        redisTemplate.delete(key(collection, field));
+      } else {
+        redisTemplate.rename(sketch, key(collection, field));
+        renamed = true;
+      }
+    } finally {
+      // Whatever failed, the database or Redis, the partial sketch is not left behind
+      if (!renamed) {
+        redisTemplate.delete(sketch);
+      }
+    }
+
+    redisTemplate.opsForValue().set(builtKey(collection, field), Instant.now().toString());
+    logger.debug("Distinct count sketch of {}.{} rebuilt", collection, field);
+  }
+
+  private void add(String collection, String field, Object value) {
+    if (value == null) {
+      return;
+    }
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      send(Map.of(key(collection, field), Set.of(value.toString())));
+      return;
+    }
+
+    @SuppressWarnings("unchecked")
+    Map<String, Set<String>> pending =
+        (Map<String, Set<String>>) TransactionSynchronizationManager.getResource(PENDING);
+    if (pending == null) {
+      Map<String, Set<String>> values = new HashMap<>();
+      TransactionSynchronizationManager.bindResource(PENDING, values);
+      TransactionSynchronizationManager.registerSynchronization(
+          new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+              send(values);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+              TransactionSynchronizationManager.unbindResourceIfPossible(PENDING);
+            }
+          });
+      pending = values;
+    }
+    pending.computeIfAbsent(key(collection, field), k -> new HashSet<>()).add(value.toString());
+  }
+
+  // Sketches that were never built are left alone, their first read starts building them
+  private void send(Map<String, Set<String>> values) {
+    try {
+      values.forEach(
+          (key, keyValues) -> {
+            if (Boolean.TRUE.equals(redisTemplate.hasKey(key + ":built"))) {
+              redisTemplate.opsForHyperLogLog().add(key, keyValues.toArray(new String[0]));
+            }
+          });
+    } catch (RuntimeException e) {
+      logger.warn("Could not add values to the distinct count sketches", e);
+    }
+  }
+}
@@ -0,0 +1,26 @@
+package com.kms.domain.report.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import java.util.Locale;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Schema(description = "An aggregate computed for every group of a report query")
+public class ReportAggregate {
+
+  @Schema(description = "The aggregate function", example = "COUNT_DISTINCT")
+  private ReportFunction function;
+
+  @Schema(description = "The field to aggregate, not used by COUNT", example = "employeeId")
+  private String field;
+
+  // Name of the result column, such as count or count_distinct(employeeId)
+  public String column() {
+    String name = function.name().toLowerCase(Locale.ROOT);
+    return field == null ? name : name + "(" + field + ")";
+  }
+}
@@ -0,0 +1,29 @@
+package com.kms.domain.report.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import java.time.Instant;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Schema(description = "Number of distinct values of a field in a collection")
+public class ReportDistinct {
+
+  @Schema(description = "The name of the collection being counted", example = "contact")
+  private String collection;
+
+  @Schema(description = "The field whose values are counted", example = "lastName")
+  private String field;
+
+  @Schema(description = "The number of distinct values", example = "1024")
+  private long count;
+
+  @Schema(description = "Whether the count is a HyperLogLog estimate, typically within 1%")
+  private boolean approximate;
+
+  @Schema(description = "When the estimate was last rebuilt from the table, null for exact counts")
+  private Instant builtAt;
+}
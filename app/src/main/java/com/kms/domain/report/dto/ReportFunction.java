@@ -0,0 +1,9 @@
+package com.kms.domain.report.dto;
+
+// Aggregates a report query can compute per group. All but COUNT take a field.
+public enum ReportFunction {
+  COUNT,
+  COUNT_DISTINCT,
+  MIN,
+  MAX
+}
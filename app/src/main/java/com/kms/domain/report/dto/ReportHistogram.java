@@ -0,0 +1,34 @@
+package com.kms.domain.report.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import java.time.Instant;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Schema(
+    description = "Number of records per time bucket, one entry per bucket including empty ones")
+public class ReportHistogram {
+
+  @Schema(description = "The name of the collection being counted", example = "task")
+  private String collection;
+
+  @Schema(description = "The timestamp field being bucketed", example = "completedAt")
+  private String field;
+
+  @Schema(description = "The size of the buckets", example = "DAY")
+  private ReportInterval interval;
+
+  @Schema(description = "The time zone the buckets start in", example = "UTC")
+  private String zone;
+
+  @Schema(description = "The start of every bucket, oldest first")
+  private List<Instant> buckets;
+
+  @Schema(description = "The number of records in every bucket")
+  private List<Long> counts;
+}
@@ -0,0 +1,43 @@
+package com.kms.domain.report.dto;
+
+import java.time.DayOfWeek;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// Bucket sizes of a histogram, truncated the same way as PostgreSQL's date_trunc
+@Getter
+@AllArgsConstructor
+public enum ReportInterval {
+  HOUR(ChronoUnit.HOURS),
+  DAY(ChronoUnit.DAYS),
+  WEEK(ChronoUnit.WEEKS);
+
+  private final ChronoUnit unit;
+
+  // Start of the bucket holding the time, weeks start on Monday
+  public ZonedDateTime truncate(ZonedDateTime time) {
+    return switch (this) {
+      case HOUR -> time.truncatedTo(ChronoUnit.HOURS);
+      case DAY -> time.truncatedTo(ChronoUnit.DAYS);
+      case WEEK ->
+          time.truncatedTo(ChronoUnit.DAYS)
+              .with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+    };
+  }
+
+  // Case insensitive, DAY when no interval is given
+  public static ReportInterval parse(String interval) {
+    if (interval == null || interval.isBlank()) {
+      return DAY;
+    }
+    for (ReportInterval value : values()) {
+      if (value.name().equalsIgnoreCase(interval.trim())) {
+        return value;
+      }
+    }
+    throw new IllegalArgumentException("Unknown interval: " + interval);
+  }
+}
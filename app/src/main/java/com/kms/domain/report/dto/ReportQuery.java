@@ -0,0 +1,29 @@
+package com.kms.domain.report.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import java.util.List;
+import java.util.Map;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Schema(description = "A report grouping a collection by several fields at once")
+public class ReportQuery {
+
+  @Schema(description = "The collection to report on", example = "contact")
+  private String collection;
+
+  @Schema(description = "The fields to group by, in result order", example = "[\"department\"]")
+  private List<String> groupBy;
+
+  @Schema(
+      description = "Values to keep by field, a record matches when it has one of them",
+      example = "{\"project\": [\"Alpha Project\", \"Beta Project\"]}")
+  private Map<String, List<String>> filters;
+
+  @Schema(description = "The aggregates per group, a count when left out")
+  private List<ReportAggregate> aggregates;
+}
@@ -0,0 +1,27 @@
+package com.kms.domain.report.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import java.util.LinkedHashMap;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Column oriented, so field names are sent once instead of once per group
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Schema(description = "Result of a report query, one list of values per column")
+public class ReportQueryResult {
+
+  @Schema(description = "The name of the collection reported on", example = "contact")
+  private String collection;
+
+  @Schema(description = "The number of groups, which is the length of every column", example = "3")
+  private int rows;
+
+  @Schema(
+      description = "The group by fields followed by the aggregates, each with a value per group",
+      example = "{\"department\": [\"Design\", \"IT\"], \"count\": [1, 3]}")
+  private LinkedHashMap<String, List<Object>> columns;
+}
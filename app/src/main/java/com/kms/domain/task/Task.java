@@ -2,19 +2,25 @@ package com.kms.domain.task;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.kms.domain.report.ReportListener;
 import com.kms.domain.user.User;
 import jakarta.persistence.*;
-import lombok.AllArgsConstructor;
+import java.time.Instant;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
 
 @Data
 @Entity
-@AllArgsConstructor
 @NoArgsConstructor
+@EntityListeners(ReportListener.class)
+@Table(indexes = @Index(name = "idx_task_user_id_id", columnList = "userId, id"))
 public class Task {
+  // Pooled sequence ids let Hibernate batch inserts instead of one round trip per row
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "task_seq")
+  @SequenceGenerator(name = "task_seq", sequenceName = "task_seq", allocationSize = 50)
   private Integer id;
 
   private String task;
@@ -22,8 +28,42 @@ public class Task {
   @JsonProperty("isCompleted")
   private Boolean isCompleted;
 
-  @ManyToOne
+  // Lazy so loading a task for a write does not join app_user, reads use TaskView instead
+  @ManyToOne(fetch = FetchType.LAZY)
   @JoinColumn(name = "userId")
   @JsonIgnore
   private User user;
+
+  // Bumped on every write, clients send it back in If-Match to avoid overwriting newer edits.
+  // The default lets the column be added to tables that already hold tasks.
+  @Version
+  @Column(nullable = false, columnDefinition = "bigint default 0")
+  private long version;
+
+  // Set by Hibernate on entity writes, the update statements in TaskRepository set them as well
+  @CreationTimestamp
+  @Column(updatable = false)
+  private Instant createdAt;
+
+  @UpdateTimestamp private Instant updatedAt;
+
+  // When the task was marked completed, null while it is open
+  private Instant completedAt;
+
+  public Task(Integer id, String task, Boolean isCompleted, User user) {
+    this.id = id;
+    this.task = task;
+    this.isCompleted = isCompleted;
+    this.user = user;
+  }
+
+  @PrePersist
+  @PreUpdate
+  void updateCompletedAt() {
+    if (!Boolean.TRUE.equals(isCompleted)) {
+      completedAt = null;
+    } else if (completedAt == null) {
+      completedAt = Instant.now();
+    }
+  }
 }
@@ -0,0 +1,84 @@
+package com.kms.domain.task;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kms.utils.version.CollectionVersions;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+// Caches task reads per user in Redis. Every entry key embeds the version of the user's tasks, so
+// bumping the version on write invalidates all of that user's entries in one command and the
+// orphaned ones simply expire.
+@Component
+public class TaskCache {
+
+  private static final Logger logger = LoggerFactory.getLogger(TaskCache.class);
+
+  private final RedisTemplate<String, String> redisTemplate;
+  private final ObjectMapper objectMapper;
+  private final CollectionVersions collectionVersions;
+  private final Duration ttl;
+  private final Counter hits;
+  private final Counter misses;
+
+  public TaskCache(
+      RedisTemplate<String, String> redisTemplate,
+      ObjectMapper objectMapper,
+      CollectionVersions collectionVersions,
+      MeterRegistry meterRegistry,
+      @Value("${tasks.cache.ttl:PT10M}") Duration ttl) {
+    this.redisTemplate = redisTemplate;
+    this.objectMapper = objectMapper;
+    this.collectionVersions = collectionVersions;
+    this.ttl = ttl;
+    this.hits = meterRegistry.counter("tasks.cache.requests", "result", "hit");
+    this.misses = meterRegistry.counter("tasks.cache.requests", "result", "miss");
+  }
+
+  // Name of the version counter of a user's tasks, shared with the ETag of the task list
+  static String collection(int userId) {
+    return "tasks:" + userId;
+  }
+
+  public <T> T get(int userId, String query, TypeReference<T> type, Supplier<T> loader) {
+    String version = collectionVersions.current(collection(userId));
+    if (version == null) {
+      misses.increment();
+      return loader.get();
+    }
+
+    String key = "tasks:" + userId + ":" + version + ":" + query;
+    try {
+      String cached = redisTemplate.opsForValue().get(key);
+      if (cached != null) {
+        hits.increment();
+        return objectMapper.readValue(cached, type);
+      }
+    } catch (RuntimeException | JsonProcessingException e) {
+      logger.warn("Task cache read failed for user with ID {}, using the database", userId, e);
+      misses.increment();
+      return loader.get();
+    }
+
+    misses.increment();
+    T value = loader.get();
+    try {
+      redisTemplate.opsForValue().set(key, objectMapper.writeValueAsString(value), ttl);
+    } catch (RuntimeException | JsonProcessingException e) {
+      logger.warn("Task cache write failed for user with ID {}", userId, e);
+    }
+    return value;
+  }
+
+  public void evict(int userId) {
+    collectionVersions.bump(collection(userId));
+  }
+}
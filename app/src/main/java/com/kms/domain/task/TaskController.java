@@ -1,24 +1,39 @@
 package com.kms.domain.task;
 
+import com.kms.domain.task.dto.BulkTaskRequest;
+import com.kms.domain.task.dto.BulkTaskResult;
 import com.kms.domain.task.dto.SaveTaskRequest;
+import com.kms.domain.task.dto.TaskBatchResult;
+import com.kms.domain.task.dto.TaskEvent;
+import com.kms.domain.task.dto.TaskView;
 import com.kms.exceptions.ErrorResponse;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.headers.Header;
 import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import java.io.IOException;
 import java.util.List;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 @Tag(name = "Task Management", description = "APIs for managing tasks")
 @RequestMapping("/tasks")
 public interface TaskController {
 
+  String NDJSON = "application/x-ndjson";
+
   @Operation(summary = "Fetch a specific task by its ID")
   @ApiResponses({
     @ApiResponse(
@@ -27,7 +42,7 @@ public interface TaskController {
         content =
             @Content(
                 mediaType = "application/json",
-                schema = @Schema(implementation = Task.class))),
+                schema = @Schema(implementation = TaskView.class))),
     @ApiResponse(
         responseCode = "400",
         description = "Invalid task ID",
@@ -44,15 +59,19 @@ public interface TaskController {
                 schema = @Schema(implementation = ErrorResponse.class)))
   })
   @GetMapping("/{id}")
-  Task getTask(
+  ResponseEntity<TaskView> getTask(
       @Parameter(description = "ID of the task to be retrieved", example = "1") @PathVariable
           int id);
 
-  @Operation(summary = "Save an existing task")
+  @Operation(
+      summary = "Save an existing task",
+      description =
+          "Send the task's ETag in If-Match to only update it when nobody changed it since")
   @ApiResponses({
     @ApiResponse(
         responseCode = "200",
         description = "Task saved successfully",
+        headers = @Header(name = "ETag", description = "New version of the task"),
         content =
             @Content(
                 mediaType = "application/json",
@@ -67,17 +86,27 @@ public interface TaskController {
     @ApiResponse(
         responseCode = "404",
         description = "Task not found",
+        content =
+            @Content(
+                mediaType = "application/json",
+                schema = @Schema(implementation = ErrorResponse.class))),
+    @ApiResponse(
+        responseCode = "412",
+        description = "Task was changed since the version given in If-Match",
         content =
             @Content(
                 mediaType = "application/json",
                 schema = @Schema(implementation = ErrorResponse.class)))
   })
   @PutMapping("/{id}")
-  Task saveOrUpdateTask(
+  ResponseEntity<Task> saveOrUpdateTask(
       @Parameter(description = "ID of the task to be updated or created", example = "1")
           @PathVariable("id")
           int id,
-      @Valid @RequestBody SaveTaskRequest request);
+      @Valid @RequestBody SaveTaskRequest request,
+      @Parameter(description = "ETag of the task version the update is based on", example = "\"0\"")
+          @RequestHeader(value = "If-Match", required = false)
+          String ifMatch);
 
   @Operation(summary = "Delete a task by its ID")
   @ApiResponses({
@@ -107,16 +136,48 @@ public interface TaskController {
   Task deleteTask(
       @Parameter(description = "ID of the task to be deleted", example = "1") @PathVariable int id);
 
-  @Operation(summary = "Get all tasks")
-  @ApiResponse(
-      responseCode = "200",
-      description = "List of all tasks",
-      content =
-          @Content(
-              mediaType = "application/json",
-              array = @ArraySchema(schema = @Schema(implementation = Task.class))))
+  @Operation(
+      summary = "Get a page of the current user's tasks",
+      description =
+          "Tasks are ordered by ID. When more tasks follow, the ID to pass as 'after' for the"
+              + " next page is returned in the X-Next-Cursor header. Send the returned ETag in"
+              + " If-None-Match to get a 304 while the user's tasks are unchanged.")
+  @ApiResponses({
+    @ApiResponse(
+        responseCode = "200",
+        description = "Page of tasks",
+        headers =
+            @Header(
+                name = "X-Next-Cursor",
+                description = "Cursor of the next page, absent on the last page"),
+        content =
+            @Content(
+                mediaType = "application/json",
+                array = @ArraySchema(schema = @Schema(implementation = TaskView.class)))),
+    @ApiResponse(responseCode = "304", description = "The user's tasks have not changed"),
+    @ApiResponse(
+        responseCode = "400",
+        description = "Invalid paging parameters",
+        content =
+            @Content(
+                mediaType = "application/json",
+                schema = @Schema(implementation = ErrorResponse.class)))
+  })
   @GetMapping
-  List<Task> getAllTasks();
+  ResponseEntity<List<TaskView>> getAllTasks(
+      @Parameter(description = "Return tasks with an ID greater than this cursor", example = "0")
+          @RequestParam(value = "after", required = false)
+          Integer after,
+      @Parameter(description = "Maximum number of tasks to return (at most 500)", example = "100")
+          @RequestParam(value = "limit", required = false)
+          Integer limit,
+      @Parameter(description = "Only return completed or uncompleted tasks", example = "false")
+          @RequestParam(value = "completed", required = false)
+          Boolean completed,
+      @Parameter(description = "Only return tasks containing this text", example = "clean")
+          @RequestParam(value = "q", required = false)
+          String query,
+      ServletWebRequest webRequest);
 
   @Operation(summary = "Add tasks to the database")
   @ApiResponses({
@@ -139,7 +200,67 @@ public interface TaskController {
   @ResponseStatus(HttpStatus.CREATED)
   List<Task> addTasks(@Valid @RequestBody List<SaveTaskRequest> saveTaskRequest);
 
-  @Operation(summary = "Search tasks by a given name")
+  @Operation(
+      summary = "Complete, reopen or delete many of the current user's tasks at once",
+      description =
+          "Tasks are selected by a list of IDs, by their completed state, or by both. The change"
+              + " runs as a single statement and only touches the current user's tasks.")
+  @ApiResponses({
+    @ApiResponse(
+        responseCode = "200",
+        description = "Number of tasks changed",
+        content =
+            @Content(
+                mediaType = "application/json",
+                schema = @Schema(implementation = BulkTaskResult.class))),
+    @ApiResponse(
+        responseCode = "400",
+        description = "Invalid request data",
+        content =
+            @Content(
+                mediaType = "application/json",
+                schema = @Schema(implementation = ErrorResponse.class)))
+  })
+  @PatchMapping("/_bulk")
+  BulkTaskResult bulkUpdateTasks(@Valid @RequestBody BulkTaskRequest request);
+
+  @Operation(
+      summary = "Stream tasks into the database",
+      description =
+          "Accepts one JSON task per line. Tasks are validated and saved in batches of 500 and"
+              + " one JSON result line is streamed back per batch.")
+  @ApiResponse(
+      responseCode = "200",
+      description = "One result line per batch",
+      content =
+          @Content(
+              mediaType = "application/x-ndjson",
+              schema = @Schema(implementation = TaskBatchResult.class)))
+  @PostMapping(
+      value = "/_stream",
+      consumes = TaskController.NDJSON,
+      produces = TaskController.NDJSON)
+  void streamTasks(HttpServletRequest request, HttpServletResponse response) throws IOException;
+
+  @Operation(
+      summary = "Subscribe to changes of the current user's tasks",
+      description =
+          "Server-Sent Events named CREATED, UPDATED or DELETED carry the changed task. A"
+              + " BULK_CHANGED event without a task means many tasks changed and the list should"
+              + " be reloaded.")
+  @ApiResponse(
+      responseCode = "200",
+      description = "Stream of task events",
+      content =
+          @Content(
+              mediaType = MediaType.TEXT_EVENT_STREAM_VALUE,
+              schema = @Schema(implementation = TaskEvent.class)))
+  @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+  SseEmitter streamTaskEvents();
+
+  @Operation(
+      summary = "Search the current user's tasks by a given name",
+      description = "Matches are ranked by similarity to the name, best match first")
   @ApiResponses({
     @ApiResponse(
         responseCode = "200",
@@ -147,7 +268,14 @@ public interface TaskController {
         content =
             @Content(
                 mediaType = "application/json",
-                array = @ArraySchema(schema = @Schema(implementation = Task.class)))),
+                array = @ArraySchema(schema = @Schema(implementation = TaskView.class)))),
+    @ApiResponse(
+        responseCode = "400",
+        description = "Invalid paging parameters",
+        content =
+            @Content(
+                mediaType = "application/json",
+                schema = @Schema(implementation = ErrorResponse.class))),
     @ApiResponse(
         responseCode = "404",
         description = "No tasks found matching the search criteria",
@@ -157,7 +285,13 @@ public interface TaskController {
                 schema = @Schema(implementation = ErrorResponse.class)))
   })
   @GetMapping("/search")
-  List<Task> getTasksByName(
+  List<TaskView> getTasksByName(
       @Parameter(description = "Name to search for", example = "clean") @RequestParam("name")
-          String name);
+          String name,
+      @Parameter(description = "Zero-based page number", example = "0")
+          @RequestParam(value = "page", required = false)
+          Integer page,
+      @Parameter(description = "Page size (at most 500)", example = "20")
+          @RequestParam(value = "size", required = false)
+          Integer size);
 }
@@ -1,28 +1,63 @@
 package com.kms.domain.task;
 
+import com.kms.domain.task.dto.BulkTaskRequest;
+import com.kms.domain.task.dto.BulkTaskResult;
 import com.kms.domain.task.dto.SaveTaskRequest;
+import com.kms.domain.task.dto.TaskPage;
+import com.kms.domain.task.dto.TaskView;
 import com.kms.utils.jwt.JWTUtils;
+import com.kms.utils.version.CollectionVersions;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import java.io.IOException;
 import java.util.List;
 import lombok.AllArgsConstructor;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 @RestController
 @AllArgsConstructor
 public class TaskControllerImpl implements TaskController {
 
+  private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
   private final TaskService taskService;
+  private final TaskImportService taskImportService;
+  private final TaskEvents taskEvents;
   private final JWTUtils jwtUtils;
+  private final CollectionVersions collectionVersions;
 
   @Override
-  public Task getTask(int id) {
-    return taskService.getTask(id);
+  public ResponseEntity<TaskView> getTask(int id) {
+    TaskView task = taskService.getTask(id);
+    return ResponseEntity.ok().eTag(String.valueOf(task.getVersion())).body(task);
   }
 
   @Override
-  public Task saveOrUpdateTask(int taskId, @Valid SaveTaskRequest request) {
+  public ResponseEntity<Task> saveOrUpdateTask(
+      int taskId, @Valid SaveTaskRequest request, String ifMatch) {
     int userId = Integer.parseInt(jwtUtils.getUserIdFromToken());
-    return taskService.saveTask(taskId, request, userId);
+    Task task = taskService.saveTask(taskId, request, userId, parseVersion(ifMatch));
+    return ResponseEntity.ok().eTag(String.valueOf(task.getVersion())).body(task);
+  }
+
+  // Reads the task version out of an ETag such as "3" or W/"3", "*" matches any version
+  private static Long parseVersion(String ifMatch) {
+    if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+      return null;
+    }
+    String version = ifMatch.trim();
+    if (version.startsWith("W/")) {
+      version = version.substring(2);
+    }
+    try {
+      return Long.parseLong(version.replace("\"", ""));
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("If-Match must be an ETag returned for the task");
+    }
   }
 
   @Override
@@ -31,9 +66,19 @@ public class TaskControllerImpl implements TaskController {
   }
 
   @Override
-  public List<Task> getAllTasks() {
+  public ResponseEntity<List<TaskView>> getAllTasks(
+      Integer after, Integer limit, Boolean completed, String query, ServletWebRequest webRequest) {
     int userId = Integer.parseInt(jwtUtils.getUserIdFromToken());
-    return taskService.getAllTasks(userId);
+    if (collectionVersions.isNotModified(TaskCache.collection(userId), webRequest)) {
+      return null;
+    }
+    TaskPage page = taskService.getTaskPage(userId, after, limit, completed, query);
+
+    ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+    if (page.getNextCursor() != null) {
+      response.header(NEXT_CURSOR_HEADER, String.valueOf(page.getNextCursor()));
+    }
+    return response.body(page.getTasks());
   }
 
   @Override
@@ -43,7 +88,28 @@ public class TaskControllerImpl implements TaskController {
   }
 
   @Override
-  public List<Task> getTasksByName(String name) {
-    return taskService.getTasksByName(name);
+  public BulkTaskResult bulkUpdateTasks(@Valid BulkTaskRequest request) {
+    int userId = Integer.parseInt(jwtUtils.getUserIdFromToken());
+    return taskService.bulkUpdateTasks(request, userId);
+  }
+
+  @Override
+  public void streamTasks(HttpServletRequest request, HttpServletResponse response)
+      throws IOException {
+    int userId = Integer.parseInt(jwtUtils.getUserIdFromToken());
+    response.setContentType(NDJSON);
+    taskImportService.importTasks(request.getInputStream(), response.getOutputStream(), userId);
+  }
+
+  @Override
+  public SseEmitter streamTaskEvents() {
+    int userId = Integer.parseInt(jwtUtils.getUserIdFromToken());
+    return taskEvents.subscribe(userId);
+  }
+
+  @Override
+  public List<TaskView> getTasksByName(String name, Integer page, Integer size) {
+    int userId = Integer.parseInt(jwtUtils.getUserIdFromToken());
+    return taskService.getTasksByName(name, userId, page, size);
   }
 }
@@ -0,0 +1,144 @@
+package com.kms.domain.task;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kms.domain.task.dto.TaskEvent;
+import com.kms.utils.transaction.AfterCommit;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+// Change feed of the task endpoints. Writes are published on a per-user Redis channel, and every
+// node forwards the messages of its subscribed channels to the SSE connections it holds.
+@Component
+public class TaskEvents implements MessageListener {
+
+  private static final Logger logger = LoggerFactory.getLogger(TaskEvents.class);
+
+  public static final String CHANNEL_PATTERN = "tasks:events:*";
+  private static final String CHANNEL_PREFIX = "tasks:events:";
+
+  private final RedisTemplate<String, String> redisTemplate;
+  private final ObjectMapper objectMapper;
+  private final Duration timeout;
+  private final Map<Integer, Set<SseEmitter>> emitters = new ConcurrentHashMap<>();
+
+  public TaskEvents(
+      RedisTemplate<String, String> redisTemplate,
+      ObjectMapper objectMapper,
+      @Value("${tasks.events.timeout:PT30M}") Duration timeout) {
+    this.redisTemplate = redisTemplate;
+    this.objectMapper = objectMapper;
+    this.timeout = timeout;
+  }
+
+  public SseEmitter subscribe(int userId) {
+    SseEmitter emitter = new SseEmitter(timeout.toMillis());
+    emitters.compute(
+        userId,
+        (id, userEmitters) -> {
+          Set<SseEmitter> result =
+              userEmitters == null ? new CopyOnWriteArraySet<>() : userEmitters;
+          result.add(emitter);
+          return result;
+        });
+
+    emitter.onCompletion(() -> remove(userId, emitter));
+    emitter.onTimeout(() -> remove(userId, emitter));
+    emitter.onError(error -> remove(userId, emitter));
+
+    logger.debug("User with ID {} subscribes to task events", userId);
+    return emitter;
+  }
+
+  // Sent once the surrounding transaction commits, so subscribers never see rolled back changes
+  public void publish(int userId, TaskEvent event) {
+    AfterCommit.run(() -> send(userId, event));
+  }
+
+  private void send(int userId, TaskEvent event) {
+    String payload;
+    try {
+      payload = objectMapper.writeValueAsString(event);
+    } catch (JsonProcessingException e) {
+      logger.warn("Could not serialize task event for user with ID {}", userId, e);
+      return;
+    }
+
+    try {
+      redisTemplate.convertAndSend(CHANNEL_PREFIX + userId, payload);
+    } catch (RuntimeException e) {
+      // Other nodes miss the event, but this node's subscribers still get it
+      logger.warn("Could not publish task event for user with ID {}", userId, e);
+      deliver(userId, event.getType().name(), payload);
+    }
+  }
+
+  @Override
+  public void onMessage(Message message, byte[] pattern) {
+    String channel = new String(message.getChannel(), StandardCharsets.UTF_8);
+    String payload = new String(message.getBody(), StandardCharsets.UTF_8);
+    try {
+      int userId = Integer.parseInt(channel.substring(CHANNEL_PREFIX.length()));
+      TaskEvent event = objectMapper.readValue(payload, TaskEvent.class);
+      deliver(userId, event.getType().name(), payload);
+    } catch (NumberFormatException | IOException e) {
+      logger.warn("Ignoring malformed task event on channel {}", channel, e);
+    }
+  }
+
+  // Comments keep idle connections from being closed by proxies and reveal dead clients
+  @Scheduled(fixedRateString = "${tasks.events.heartbeat:PT25S}")
+  public void sendHeartbeats() {
+    emitters.forEach(
+        (userId, userEmitters) -> {
+          for (SseEmitter emitter : userEmitters) {
+            send(userId, emitter, SseEmitter.event().comment("heartbeat"));
+          }
+        });
+  }
+
+  private void deliver(int userId, String name, String payload) {
+    Set<SseEmitter> userEmitters = emitters.get(userId);
+    if (userEmitters == null) {
+      return;
+    }
+    for (SseEmitter emitter : userEmitters) {
+      send(
+          userId, emitter, SseEmitter.event().name(name).data(payload, MediaType.APPLICATION_JSON));
+    }
+  }
+
+  private void send(int userId, SseEmitter emitter, SseEmitter.SseEventBuilder event) {
+    try {
+      emitter.send(event);
+    } catch (IOException | IllegalStateException e) {
+      // The client went away, drop the connection
+      remove(userId, emitter);
+      emitter.completeWithError(e);
+    }
+  }
+
+  private void remove(int userId, SseEmitter emitter) {
+    emitters.computeIfPresent(
+        userId,
+        (id, userEmitters) -> {
+          userEmitters.remove(emitter);
+          return userEmitters.isEmpty() ? null : userEmitters;
+        });
+  }
+}
@@ -0,0 +1,106 @@
+package com.kms.domain.task;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kms.domain.task.dto.SaveTaskRequest;
+import com.kms.domain.task.dto.TaskBatchResult;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import lombok.AllArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+@Service
+@AllArgsConstructor
+public class TaskImportService {
+
+  private static final Logger logger = LoggerFactory.getLogger(TaskImportService.class);
+
+  public static final int IMPORT_BATCH_SIZE = 500;
+
+  private final TaskService taskService;
+  private final ObjectMapper objectMapper;
+  private final Validator validator;
+
+  // Reads one task per line and persists them batch by batch. The next batch is only read once the
+  // previous one is committed and its result written, so a fast client is held back by TCP flow
+  // control instead of being buffered in memory.
+  public void importTasks(InputStream in, OutputStream out, int userId) throws IOException {
+    List<SaveTaskRequest> batch = new ArrayList<>(IMPORT_BATCH_SIZE);
+    List<String> errors = new ArrayList<>();
+    int record = 0;
+    int batchRecords = 0;
+    int batchNumber = 0;
+    int accepted = 0;
+
+    try (MappingIterator<SaveTaskRequest> requests =
+        objectMapper.readerFor(SaveTaskRequest.class).readValues(in)) {
+      while (requests.hasNextValue()) {
+        SaveTaskRequest request = requests.nextValue();
+        record++;
+        batchRecords++;
+
+        Set<ConstraintViolation<SaveTaskRequest>> violations = validator.validate(request);
+        if (violations.isEmpty()) {
+          batch.add(request);
+        } else {
+          for (ConstraintViolation<SaveTaskRequest> violation : violations) {
+            errors.add(record + ": " + violation.getMessage());
+          }
+        }
+
+        if (batchRecords == IMPORT_BATCH_SIZE) {
+          accepted += writeBatch(out, ++batchNumber, batchRecords, batch, errors, userId);
+          batchRecords = 0;
+        }
+      }
+    } catch (JsonProcessingException e) {
+      // The rest of the stream cannot be parsed reliably, so report what was read and stop
+      errors.add((record + 1) + ": " + e.getOriginalMessage());
+      logger.debug("Stopped task import for user with ID {} at record {}", userId, record + 1);
+    }
+
+    if (batchRecords > 0 || !errors.isEmpty()) {
+      accepted += writeBatch(out, ++batchNumber, batchRecords, batch, errors, userId);
+    }
+
+    logger.debug("User with ID {} streamed {} tasks, {} accepted", userId, record, accepted);
+  }
+
+  private int writeBatch(
+      OutputStream out,
+      int batchNumber,
+      int batchRecords,
+      List<SaveTaskRequest> batch,
+      List<String> errors,
+      int userId)
+      throws IOException {
+    int accepted = 0;
+    if (!batch.isEmpty()) {
+      try {
+        accepted = taskService.addTasks(batch, userId).size();
+      } catch (RuntimeException e) {
+        logger.debug("Batch {} of user with ID {} failed", batchNumber, userId, e);
+        errors.add("batch failed: " + e.getMessage());
+      }
+    }
+
+    TaskBatchResult result =
+        new TaskBatchResult(batchNumber, accepted, batchRecords - accepted, List.copyOf(errors));
+    out.write(objectMapper.writeValueAsBytes(result));
+    out.write('\n');
+    out.flush();
+
+    batch.clear();
+    errors.clear();
+    return accepted;
+  }
+}
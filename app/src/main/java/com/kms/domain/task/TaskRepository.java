@@ -1,9 +1,15 @@
 package com.kms.domain.task;
 
+import com.kms.domain.task.dto.TaskView;
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 public interface TaskRepository extends JpaRepository<Task, Integer> {
   Optional<Task> findById(int id);
@@ -14,7 +20,115 @@ public interface TaskRepository extends JpaRepository<Task, Integer> {
 
   List<Task> findByUser_Id(int userId);
 
-  List<Task> findByTaskContainingIgnoreCase(String name);
+  @Query(
+      "SELECT new com.kms.domain.task.dto.TaskView(t.id, t.task, t.isCompleted, t.version)"
+          + " FROM Task t WHERE t.id = :id")
+  Optional<TaskView> findViewById(@Param("id") int id);
+
+  // Served by the pg_trgm GIN index on task, best matches first. Rows are the TaskView columns
+  @Query(
+      value =
+          "SELECT t.id, t.task, t.is_completed, t.version FROM task t WHERE t.user_id = :userId"
+              + " AND t.task ILIKE :pattern ESCAPE '\\'"
+              + " ORDER BY similarity(t.task, :name) DESC, t.id",
+      nativeQuery = true)
+  List<Object[]> searchByTaskRanked(
+      @Param("userId") int userId,
+      @Param("name") String name,
+      @Param("pattern") String pattern,
+      Pageable pageable);
+
+  @Query(
+      "SELECT new com.kms.domain.task.dto.TaskView(t.id, t.task, t.isCompleted, t.version)"
+          + " FROM Task t WHERE t.user.id = :userId"
+          + " AND LOWER(t.task) LIKE :pattern ESCAPE '\\' ORDER BY t.id")
+  List<TaskView> searchByTask(
+      @Param("userId") int userId, @Param("pattern") String pattern, Pageable pageable);
+
+  // Keyset page over the (userId, id) index, so the cost stays flat however deep the cursor is
+  @Query(
+      "SELECT new com.kms.domain.task.dto.TaskView(t.id, t.task, t.isCompleted, t.version)"
+          + " FROM Task t WHERE t.user.id = :userId AND t.id > :after"
+          + " AND (:completed IS NULL OR t.isCompleted = :completed)"
+          + " AND LOWER(t.task) LIKE :pattern ESCAPE '\\'"
+          + " ORDER BY t.id")
+  List<TaskView> findPageByUserId(
+      @Param("userId") int userId,
+      @Param("after") int after,
+      @Param("completed") Boolean completed,
+      @Param("pattern") String pattern,
+      Limit limit);
+
+  // Set-based bulk edits, each one statement scoped to the owner of the tasks
+  @Modifying(clearAutomatically = true)
+  @Query(
+      "UPDATE Task t SET t.isCompleted = :value, t.version = t.version + 1,"
+          + " t.updatedAt = instant, t.completedAt = CASE WHEN :value = true"
+          + " THEN COALESCE(t.completedAt, instant) ELSE NULL END"
+          + " WHERE t.user.id = :userId AND t.id IN :ids"
+          + " AND (:completed IS NULL OR t.isCompleted = :completed)")
+  int updateCompletedByIds(
+      @Param("userId") int userId,
+      @Param("ids") List<Integer> ids,
+      @Param("completed") Boolean completed,
+      @Param("value") boolean value);
+
+  @Modifying(clearAutomatically = true)
+  @Query(
+      "UPDATE Task t SET t.isCompleted = :value, t.version = t.version + 1,"
+          + " t.updatedAt = instant, t.completedAt = CASE WHEN :value = true"
+          + " THEN COALESCE(t.completedAt, instant) ELSE NULL END"
+          + " WHERE t.user.id = :userId AND t.isCompleted = :completed")
+  int updateCompletedByFilter(
+      @Param("userId") int userId,
+      @Param("completed") boolean completed,
+      @Param("value") boolean value);
+
+  @Modifying(clearAutomatically = true)
+  @Query(
+      "DELETE FROM Task t WHERE t.user.id = :userId AND t.id IN :ids"
+          + " AND (:completed IS NULL OR t.isCompleted = :completed)")
+  int deleteByIds(
+      @Param("userId") int userId,
+      @Param("ids") List<Integer> ids,
+      @Param("completed") Boolean completed);
+
+  @Modifying(clearAutomatically = true)
+  @Query("DELETE FROM Task t WHERE t.user.id = :userId AND t.isCompleted = :completed")
+  int deleteByFilter(@Param("userId") int userId, @Param("completed") boolean completed);
+
+  // Columns the conditional update sets or keeps, returned with the new version
+  interface UpdatedTask {
+    long getVersion();
+
+    Instant getCreatedAt();
+
+    Instant getUpdatedAt();
+
+    Instant getCompletedAt();
+  }
+
+  // Updates the caller's task in one round trip and returns its new version. A null version skips
+  // the version check, no row is returned when the task is missing, owned by someone else or was
+  // changed since the given version
+  @Query(
+      value =
+          "UPDATE task SET task = :task, is_completed = :isCompleted, version = version + 1,"
+              + " updated_at = now(), completed_at = CASE WHEN :isCompleted"
+              + " THEN coalesce(completed_at, now()) END"
+              + " WHERE id = :id AND user_id = :userId"
+              + " AND (CAST(:version AS bigint) IS NULL OR version = :version)"
+              + " RETURNING version, created_at AS createdAt, updated_at AS updatedAt,"
+              + " completed_at AS completedAt",
+      nativeQuery = true)
+  Optional<UpdatedTask> updateTask(
+      @Param("id") int id,
+      @Param("userId") int userId,
+      @Param("task") String task,
+      @Param("isCompleted") boolean isCompleted,
+      @Param("version") Long version);
+
+  boolean existsByIdAndUser_Id(int id, int userId);
 
   @Query("SELECT t.isCompleted, COUNT(t) FROM Task t GROUP BY t.isCompleted")
   List<Object[]> countTasksByIsCompleted();
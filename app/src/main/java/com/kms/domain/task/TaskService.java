@@ -1,16 +1,34 @@
 package com.kms.domain.task;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.kms.config.DatabaseInitializer;
+import com.kms.domain.report.ReportCache;
+import com.kms.domain.task.dto.BulkTaskAction;
+import com.kms.domain.task.dto.BulkTaskRequest;
+import com.kms.domain.task.dto.BulkTaskResult;
 import com.kms.domain.task.dto.SaveTaskRequest;
+import com.kms.domain.task.dto.TaskEvent;
+import com.kms.domain.task.dto.TaskEventType;
+import com.kms.domain.task.dto.TaskPage;
+import com.kms.domain.task.dto.TaskView;
+import com.kms.domain.user.User;
 import com.kms.domain.user.UserRepository;
 import com.kms.utils.appuser.AppUserService;
+import jakarta.persistence.EntityManager;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 import java.util.NoSuchElementException;
 import java.util.Optional;
 import lombok.AllArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 @Service
 @AllArgsConstructor
@@ -18,12 +36,26 @@ public class TaskService {
 
   private static final Logger logger = LoggerFactory.getLogger(TaskService.class);
 
+  public static final int DEFAULT_PAGE_SIZE = 100;
+  public static final int MAX_PAGE_SIZE = 500;
+  public static final int DEFAULT_SEARCH_SIZE = 20;
+
+  // Keep in sync with spring.jpa.properties.hibernate.jdbc.batch_size
+  private static final int INSERT_BATCH_SIZE = 50;
+
+  private static final TypeReference<TaskPage> TASK_PAGE = new TypeReference<>() {};
+
   private final TaskRepository taskRepository;
   private final AppUserService appUserService;
   private final UserRepository userRepository;
+  private final DatabaseInitializer databaseInitializer;
+  private final EntityManager entityManager;
+  private final TaskCache taskCache;
+  private final TaskEvents taskEvents;
+  private final ReportCache reportCache;
 
-  public Task getTask(int id) {
-    Optional<Task> optionalTask = taskRepository.findById(id);
+  public TaskView getTask(int id) {
+    Optional<TaskView> optionalTask = taskRepository.findViewById(id);
 
     if (optionalTask.isEmpty()) {
       logger.debug("Task not found with id: {}", id);
@@ -35,7 +67,47 @@ public class TaskService {
     return optionalTask.get();
   }
 
+  @Transactional
   public Task saveTask(int taskId, SaveTaskRequest request, int userId) {
+    return saveTask(taskId, request, userId, null);
+  }
+
+  // Updates the caller's own task with a single conditional statement. Only creating a task, or
+  // taking over another user's one without If-Match, goes through the entity path.
+  @Transactional
+  public Task saveTask(int taskId, SaveTaskRequest request, int userId, Long expectedVersion) {
+    Optional<TaskRepository.UpdatedTask> updated =
+        taskRepository.updateTask(
+            taskId, userId, request.getTask(), request.getIsCompleted(), expectedVersion);
+
+    if (updated.isPresent()) {
+      logger.debug("User with ID {} updates task ID {}", userId, taskId);
+      taskCache.evict(userId);
+      // The conditional update bypasses the entity listener
+      reportCache.invalidate("task");
+      Task task =
+          new Task(
+              taskId,
+              request.getTask(),
+              request.getIsCompleted(),
+              userRepository.getReferenceById(userId));
+      task.setVersion(updated.get().getVersion());
+      task.setCreatedAt(updated.get().getCreatedAt());
+      task.setUpdatedAt(updated.get().getUpdatedAt());
+      task.setCompletedAt(updated.get().getCompletedAt());
+      taskEvents.publish(userId, new TaskEvent(TaskEventType.UPDATED, toTaskView(task)));
+      return task;
+    }
+
+    if (expectedVersion != null) {
+      if (taskRepository.existsByIdAndUser_Id(taskId, userId)) {
+        logger.debug("Task ID {} no longer has version {}", taskId, expectedVersion);
+        throw new OptimisticLockingFailureException(
+            "Task with id " + taskId + " was changed by another request");
+      }
+      throw new NoSuchElementException("Task not found with id: " + taskId);
+    }
+
     Optional<Task> optionalTask = taskRepository.findById(taskId);
     Task task;
 
@@ -47,11 +119,23 @@ public class TaskService {
       logger.debug("User with ID {} creates a new task", userId);
     }
 
+    boolean created = task.getId() == null;
+    if (task.getUser() != null && task.getUser().getId() != userId) {
+      int previousOwnerId = task.getUser().getId();
+      taskCache.evict(previousOwnerId);
+      taskEvents.publish(previousOwnerId, new TaskEvent(TaskEventType.DELETED, toTaskView(task)));
+    }
     task.setTask(request.getTask());
     task.setIsCompleted(request.getIsCompleted());
     task.setUser(userRepository.findById(userId).get());
 
-    return taskRepository.save(task);
+    // Flush so the returned version already includes this update
+    Task saved = taskRepository.saveAndFlush(task);
+    taskCache.evict(userId);
+    taskEvents.publish(
+        userId,
+        new TaskEvent(created ? TaskEventType.CREATED : TaskEventType.UPDATED, toTaskView(saved)));
+    return saved;
   }
 
   public Task deleteTask(int id) {
@@ -65,31 +149,144 @@ public class TaskService {
     logger.debug("Task with ID {} is deleted", id);
     Task response = optionalTask.get();
     taskRepository.deleteById(id);
+    if (response.getUser() != null) {
+      taskCache.evict(response.getUser().getId());
+      taskEvents.publish(
+          response.getUser().getId(), new TaskEvent(TaskEventType.DELETED, toTaskView(response)));
+    }
     return response;
   }
 
-  public List<Task> getAllTasks(int userId) {
-    logger.debug("User with ID {} retrieves all tasks", userId);
-    return taskRepository.findByUser_Id(userId);
+  public TaskPage getTaskPage(
+      int userId, Integer after, Integer limit, Boolean completed, String query) {
+    int pageSize = limit == null ? DEFAULT_PAGE_SIZE : limit;
+    if (pageSize < 1) {
+      throw new IllegalArgumentException("limit must be a positive number");
+    }
+    int size = Math.min(pageSize, MAX_PAGE_SIZE);
+    String cacheKey = "page:" + after + ":" + size + ":" + completed + ":" + query;
+
+    return taskCache.get(
+        userId, cacheKey, TASK_PAGE, () -> loadTaskPage(userId, after, size, completed, query));
+  }
+
+  private TaskPage loadTaskPage(
+      int userId, Integer after, int pageSize, Boolean completed, String query) {
+    // Fetch one extra row to find out whether another page follows
+    List<TaskView> tasks =
+        taskRepository.findPageByUserId(
+            userId,
+            after == null ? 0 : after,
+            completed,
+            toLikePattern(query),
+            Limit.of(pageSize + 1));
+
+    Integer nextCursor = null;
+    if (tasks.size() > pageSize) {
+      tasks = tasks.subList(0, pageSize);
+      nextCursor = tasks.get(pageSize - 1).getId();
+    }
+
+    logger.debug("User with ID {} retrieves {} tasks after ID {}", userId, tasks.size(), after);
+    return new TaskPage(tasks, nextCursor);
+  }
+
+  private static String toLikePattern(String query) {
+    if (query == null || query.isBlank()) {
+      return "%";
+    }
+    String escaped =
+        query
+            .toLowerCase(Locale.ROOT)
+            .replace("\\", "\\\\")
+            .replace("%", "\\%")
+            .replace("_", "\\_");
+    return "%" + escaped + "%";
   }
 
+  @Transactional
   public List<Task> addTasks(List<SaveTaskRequest> saveTaskRequests, int userId) {
-    List<Task> tasks = new ArrayList<>();
+    User user = userRepository.getReferenceById(userId);
+    List<Task> tasks = new ArrayList<>(saveTaskRequests.size());
 
     for (SaveTaskRequest request : saveTaskRequests) {
       Task task = new Task();
       task.setTask(request.getTask());
       task.setIsCompleted(request.getIsCompleted());
-      task.setUser(userRepository.findById(userId).get());
+      task.setUser(user);
+      entityManager.persist(task);
       tasks.add(task);
+
+      // Send the pending inserts as one JDBC batch and keep the persistence context small
+      if (tasks.size() % INSERT_BATCH_SIZE == 0) {
+        entityManager.flush();
+        entityManager.clear();
+        user = userRepository.getReferenceById(userId);
+      }
     }
 
+    taskCache.evict(userId);
+    // Large imports are announced once instead of flooding subscribers with one event per task
+    if (tasks.size() > INSERT_BATCH_SIZE) {
+      taskEvents.publish(userId, new TaskEvent(TaskEventType.BULK_CHANGED, null));
+    } else {
+      for (Task task : tasks) {
+        taskEvents.publish(userId, new TaskEvent(TaskEventType.CREATED, toTaskView(task)));
+      }
+    }
     logger.debug("User with ID {} creates {} new tasks", userId, tasks.size());
-    return taskRepository.saveAll(tasks);
+    return tasks;
   }
 
-  public List<Task> getTasksByName(String name) {
-    List<Task> tasks = taskRepository.findByTaskContainingIgnoreCase(name);
+  @Transactional
+  public BulkTaskResult bulkUpdateTasks(BulkTaskRequest request, int userId) {
+    List<Integer> ids = request.getIds();
+    Boolean completed = request.getCompleted();
+    if (ids == null && completed == null) {
+      throw new IllegalArgumentException("Either ids or completed must be given");
+    }
+
+    int affected;
+    if (ids != null && ids.isEmpty()) {
+      affected = 0;
+    } else if (request.getAction() == BulkTaskAction.DELETE) {
+      affected =
+          ids != null
+              ? taskRepository.deleteByIds(userId, ids, completed)
+              : taskRepository.deleteByFilter(userId, completed);
+    } else {
+      boolean value = request.getAction() == BulkTaskAction.COMPLETE;
+      affected =
+          ids != null
+              ? taskRepository.updateCompletedByIds(userId, ids, completed, value)
+              : taskRepository.updateCompletedByFilter(userId, completed, value);
+    }
+
+    if (affected > 0) {
+      taskCache.evict(userId);
+      reportCache.invalidate("task");
+      taskEvents.publish(userId, new TaskEvent(TaskEventType.BULK_CHANGED, null));
+    }
+    logger.debug("User with ID {} applies {} to {} tasks", userId, request.getAction(), affected);
+    return new BulkTaskResult(request.getAction(), affected);
+  }
+
+  public List<TaskView> getTasksByName(String name, int userId, Integer page, Integer size) {
+    int pageNumber = page == null ? 0 : page;
+    int pageSize = size == null ? DEFAULT_SEARCH_SIZE : size;
+    if (pageNumber < 0 || pageSize < 1) {
+      throw new IllegalArgumentException("page must not be negative and size must be positive");
+    }
+    Pageable pageable = PageRequest.of(pageNumber, Math.min(pageSize, MAX_PAGE_SIZE));
+
+    List<TaskView> tasks =
+        databaseInitializer.isTrigramSearchEnabled()
+            ? taskRepository
+                .searchByTaskRanked(userId, name, toLikePattern(name), pageable)
+                .stream()
+                .map(TaskService::toTaskView)
+                .toList()
+            : taskRepository.searchByTask(userId, toLikePattern(name), pageable);
 
     if (tasks.isEmpty()) {
       logger.debug("Task not found with name: {}", name);
@@ -99,4 +296,16 @@ public class TaskService {
     logger.debug("{} tasks with name {} are found", tasks.size(), name);
     return tasks;
   }
+
+  private static TaskView toTaskView(Task task) {
+    return new TaskView(task.getId(), task.getTask(), task.getIsCompleted(), task.getVersion());
+  }
+
+  private static TaskView toTaskView(Object[] row) {
+    return new TaskView(
+        ((Number) row[0]).intValue(),
+        (String) row[1],
+        (Boolean) row[2],
+        ((Number) row[3]).longValue());
+  }
 }
@@ -0,0 +1,7 @@
+package com.kms.domain.task.dto;
+
+public enum BulkTaskAction {
+  COMPLETE,
+  REOPEN,
+  DELETE
+}
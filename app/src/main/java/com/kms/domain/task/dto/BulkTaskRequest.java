@@ -0,0 +1,22 @@
+package com.kms.domain.task.dto;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import java.util.List;
+import lombok.Data;
+
+@Data
+public class BulkTaskRequest {
+
+  public static final int MAX_IDS = 10000;
+
+  @NotNull(message = "action must be one of COMPLETE, REOPEN or DELETE")
+  private BulkTaskAction action;
+
+  // Tasks to change, when omitted the completed filter alone selects the tasks
+  @Size(max = MAX_IDS, message = "At most " + MAX_IDS + " ids can be given")
+  private List<Integer> ids;
+
+  // Only change completed or uncompleted tasks
+  private Boolean completed;
+}
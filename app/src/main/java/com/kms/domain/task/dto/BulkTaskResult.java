@@ -0,0 +1,14 @@
+package com.kms.domain.task.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class BulkTaskResult {
+
+  private BulkTaskAction action;
+
+  // Number of tasks that were updated or deleted
+  private int affected;
+}
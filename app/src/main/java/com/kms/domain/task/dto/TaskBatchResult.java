@@ -0,0 +1,20 @@
+package com.kms.domain.task.dto;
+
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class TaskBatchResult {
+
+  // 1-based number of the batch within the stream
+  private int batch;
+
+  private int accepted;
+
+  private int rejected;
+
+  // One message per rejected record, prefixed with the record's 1-based position in the stream
+  private List<String> errors;
+}
@@ -0,0 +1,16 @@
+package com.kms.domain.task.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TaskEvent {
+
+  private TaskEventType type;
+
+  // The task as it is after the change, null for BULK_CHANGED
+  private TaskView task;
+}
@@ -0,0 +1,9 @@
+package com.kms.domain.task.dto;
+
+public enum TaskEventType {
+  CREATED,
+  UPDATED,
+  DELETED,
+  // Many tasks changed at once, clients should reload their task list
+  BULK_CHANGED
+}
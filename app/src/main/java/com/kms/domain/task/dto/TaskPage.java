@@ -0,0 +1,17 @@
+package com.kms.domain.task.dto;
+
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TaskPage {
+
+  private List<TaskView> tasks;
+
+  // ID to pass as "after" to fetch the following page, null when this is the last page
+  private Integer nextCursor;
+}
@@ -0,0 +1,22 @@
+package com.kms.domain.task.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Read model of a task, selected straight from the task columns so reads never touch app_user
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TaskView {
+
+  private Integer id;
+
+  private String task;
+
+  @JsonProperty("isCompleted")
+  private Boolean isCompleted;
+
+  private Long version;
+}
@@ -6,7 +6,9 @@ import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.security.authentication.BadCredentialsException;
@@ -51,6 +53,13 @@ public class CentralExceptionHandler {
     return Map.of("message", "A data integrity violation occurred.");
   }
 
+  @ResponseStatus(HttpStatus.PRECONDITION_FAILED)
+  @ExceptionHandler(OptimisticLockingFailureException.class)
+  public Map<String, String> handleOptimisticLockingFailureException(
+      OptimisticLockingFailureException ex) {
+    return Map.of("message", ex.getMessage());
+  }
+
   @ResponseStatus(HttpStatus.NOT_FOUND)
   @ExceptionHandler(NoSuchElementException.class)
   public Map<String, String> handleNoSuchElementException(NoSuchElementException ex) {
@@ -69,6 +78,12 @@ public class CentralExceptionHandler {
     return Map.of("message", ex.getMessage());
   }
 
+  @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+  @ExceptionHandler(TaskRejectedException.class)
+  public Map<String, String> handleTaskRejectedException(TaskRejectedException ex) {
+    return Map.of("message", "The server is busy with other jobs, please try again later.");
+  }
+
   @ResponseStatus(HttpStatus.CONFLICT)
   @ExceptionHandler(IllegalStateException.class)
   public Map<String, String> handleIllegalStateException(IllegalStateException ex) {
@@ -0,0 +1,26 @@
+package com.kms.utils.transaction;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+// Defers side effects such as cache invalidation or notifications until the surrounding
+// transaction commits, so nobody observes a change that is later rolled back
+public final class AfterCommit {
+
+  private AfterCommit() {}
+
+  // Runs the action right away when no transaction is active
+  public static void run(Runnable action) {
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(
+          new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+              action.run();
+            }
+          });
+    } else {
+      action.run();
+    }
+  }
+}
@@ -0,0 +1,73 @@
+package com.kms.utils.version;
+
+import com.kms.utils.transaction.AfterCommit;
+import lombok.AllArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.ServletWebRequest;
+
+// Version counters in Redis for collections such as a user's tasks. Writers bump the counter of
+// the collection they change, so readers can tell whether anything changed without querying it.
+@Component
+@AllArgsConstructor
+public class CollectionVersions {
+
+  private static final Logger logger = LoggerFactory.getLogger(CollectionVersions.class);
+
+  private final RedisTemplate<String, String> redisTemplate;
+
+  // Returns null when Redis is unavailable, callers must then treat the collection as changed
+  public String current(String collection) {
+    try {
+      String key = key(collection);
+      String version = redisTemplate.opsForValue().get(key);
+      if (version != null) {
+        return version;
+      }
+      // Start from the clock rather than 0, so a counter lost with Redis data does not hand out
+      // versions that clients have already seen
+      redisTemplate.opsForValue().setIfAbsent(key, String.valueOf(System.currentTimeMillis()));
+      return redisTemplate.opsForValue().get(key);
+    } catch (RuntimeException e) {
+      logger.warn("Could not read the version of {}", collection, e);
+      return null;
+    }
+  }
+
+  // Runs after the surrounding transaction commits, so a concurrent read cannot pair the new
+  // version with rows that are about to change
+  public void bump(String collection) {
+    AfterCommit.run(() -> increment(collection));
+  }
+
+  // Sets the ETag of the collection on the response and reports whether the client's
+  // If-None-Match already matches it, in which case the response is a 304 without a body
+  public boolean isNotModified(String collection, ServletWebRequest request) {
+    String version = current(collection);
+    if (version == null) {
+      return false;
+    }
+    if (request.getResponse() != null) {
+      // Let clients keep the body but revalidate it on every poll
+      request.getResponse().setHeader(HttpHeaders.CACHE_CONTROL, "private, no-cache");
+    }
+    return request.checkNotModified("\"" + collection.replace(':', '-') + "-" + version + "\"");
+  }
+
+  private void increment(String collection) {
+    try {
+      String key = key(collection);
+      redisTemplate.opsForValue().setIfAbsent(key, String.valueOf(System.currentTimeMillis()));
+      redisTemplate.opsForValue().increment(key);
+    } catch (RuntimeException e) {
+      logger.warn("Could not bump the version of {}", collection, e);
+    }
+  }
+
+  private static String key(String collection) {
+    return "version:" + collection;
+  }
+}
@@ -8,30 +8,48 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.kms.domain.contact.Contact;
+import com.kms.domain.contact.ContactDedupeJobs;
+import com.kms.domain.contact.ContactDeduplicator;
+import com.kms.domain.contact.ContactDictionary;
 import com.kms.domain.contact.ContactRepository;
 import com.kms.domain.contact.ContactService;
+import com.kms.domain.contact.ContactSuggestIndex;
+import com.kms.domain.contact.dto.ContactDedupeJob;
+import com.kms.domain.contact.dto.ContactMergeProposal;
+import com.kms.domain.contact.dto.ContactMergeResult;
 import com.kms.domain.contact.dto.SaveContactRequest;
 import com.kms.domain.user.User;
 import com.kms.domain.user.UserRepository;
+import com.kms.utils.version.CollectionVersions;
+import jakarta.servlet.ServletOutputStream;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.transaction.Transactional;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.web.multipart.MultipartFile;
 
 @SpringBootTest()
@@ -56,7 +74,9 @@ public class ContactTest {
 
   @BeforeAll
   static void initDatabase(
-      @Autowired ContactRepository contactRepository, @Autowired UserRepository userRepository) {
+      @Autowired ContactRepository contactRepository,
+      @Autowired UserRepository userRepository,
+      @Autowired ContactSuggestIndex contactSuggestIndex) {
     // Clear existing data
     contactRepository.deleteAll();
     // Clear existing user
@@ -78,6 +98,8 @@ public class ContactTest {
             null, "Michael", "Brown", "Sales Lead", "Sales", "Sales Strategy", "default", 1005);
 
     contactRepository.saveAll(List.of(contact1, contact2, contact3, contact4, contact5));
+    // The contacts are saved directly, so load them into the suggest index by hand
+    contactSuggestIndex.rebuild();
   }
 
   @Test
@@ -269,6 +291,59 @@ public class ContactTest {
         .andExpect(jsonPath("$.length()").value(5));
   }
 
+  @Test
+  @WithMockUser(username = "username_demo_1")
+  void getAllContacts_shouldReturnNotModifiedWithMatchingETag() throws Exception {
+    String etag =
+        mockMvc
+            .perform(get("/contacts"))
+            .andExpect(status().isOk())
+            .andExpect(header().exists("ETag"))
+            .andReturn()
+            .getResponse()
+            .getHeader("ETag");
+
+    mockMvc
+        .perform(get("/contacts").header("If-None-Match", etag))
+        .andExpect(status().isNotModified())
+        .andExpect(content().string(""));
+
+    mockMvc
+        .perform(get("/contacts").header("If-None-Match", "\"contacts-0\""))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.length()").value(5));
+  }
+
+  @Test
+  @WithMockUser(username = "username_demo_1")
+  void getAllContacts_shouldReturnPagesWithSelectedFields() throws Exception {
+    mockMvc
+        .perform(get("/contacts?limit=3&fields=id,lastName"))
+        .andExpect(status().isOk())
+        .andExpect(header().string("X-Next-Cursor", "3"))
+        .andExpect(jsonPath("$.length()").value(3))
+        .andExpect(jsonPath("$[0].id").value(1))
+        .andExpect(jsonPath("$[0].lastName").value("Doe"))
+        .andExpect(jsonPath("$[0].firstName").doesNotExist());
+
+    mockMvc
+        .perform(get("/contacts?after=3&limit=3"))
+        .andExpect(status().isOk())
+        .andExpect(header().doesNotExist("X-Next-Cursor"))
+        .andExpect(jsonPath("$.length()").value(2))
+        .andExpect(jsonPath("$[0].firstName").value("Alice"))
+        .andExpect(jsonPath("$[1].employeeId").value(1005));
+  }
+
+  @Test
+  @WithMockUser(username = "username_demo_1")
+  void getAllContacts_shouldReturnBadRequestWithUnknownField() throws Exception {
+    mockMvc
+        .perform(get("/contacts?fields=id,salary"))
+        .andExpect(status().isBadRequest())
+        .andExpect(jsonPath("$.message").value("Unknown contact field: salary"));
+  }
+
   @Test
   @WithMockUser(username = "username_demo_1")
   @Transactional
@@ -336,6 +411,265 @@ public class ContactTest {
         .andExpect(jsonPath("$.message").value("Contact not found with name: non-existing-name"));
   }
 
+  @Test
+  @WithMockUser(username = "username_demo_1")
+  void suggestContacts_shouldReturnContactsWithMatchingNamePrefix() throws Exception {
+    mockMvc
+        .perform(get("/contacts/suggest?q=JO").contentType(MediaType.APPLICATION_JSON))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.length()").value(2))
+        .andExpect(jsonPath("$[0].firstName").value("John"))
+        .andExpect(jsonPath("$[1].lastName").value("Johnson"));
+
+    mockMvc
+        .perform(get("/contacts/suggest?q=john d&limit=1").contentType(MediaType.APPLICATION_JSON))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.length()").value(1))
+        .andExpect(jsonPath("$[0].lastName").value("Doe"));
+  }
+
+  @Test
+  @WithMockUser(username = "username_demo_1")
+  void suggestContacts_shouldReturnBadRequestWithInvalidLimit() throws Exception {
+    mockMvc
+        .perform(get("/contacts/suggest?q=jo&limit=0").contentType(MediaType.APPLICATION_JSON))
+        .andExpect(status().isBadRequest());
+  }
+
+  @Test
+  @WithMockUser(username = "username_demo_1")
+  void importContactsAsync_shouldImportInBackgroundAndReportErrors() throws Exception {
+    String csvContent =
+        "firstName,lastName,title,department,project,avatar,employeeId\n"
+            + "Grace,Hopper,Engineer,IT,Alpha Project,default,abc\n"
+            + ",Torvalds,Engineer,IT,Beta Project,default,2002\n";
+
+    MockMultipartFile csvFile =
+        new MockMultipartFile("file", "contacts.csv", "text/csv", csvContent.getBytes());
+
+    MvcResult submitted =
+        mockMvc
+            .perform(multipart("/contacts/import/_async").file(csvFile))
+            .andExpect(status().isAccepted())
+            .andExpect(jsonPath("$.jobId").exists())
+            .andReturn();
+    String jobId =
+        objectMapper.readTree(submitted.getResponse().getContentAsString()).get("jobId").asText();
+
+    // The job runs on another thread, so poll until it finishes
+    String status = "";
+    for (int attempt = 0; attempt < 50 && !status.equals("COMPLETED"); attempt++) {
+      Thread.sleep(100);
+      String job =
+          mockMvc
+              .perform(get("/contacts/import/" + jobId))
+              .andExpect(status().isOk())
+              .andReturn()
+              .getResponse()
+              .getContentAsString();
+      status = objectMapper.readTree(job).get("status").asText();
+    }
+    assertEquals("COMPLETED", status);
+
+    // Only invalid rows are used, as the job commits outside of the test transaction
+    mockMvc
+        .perform(get("/contacts/import/" + jobId))
+        .andExpect(jsonPath("$.imported").value(0))
+        .andExpect(jsonPath("$.failed").value(2))
+        .andExpect(jsonPath("$.errors[0]").value("1: Employee ID must be a number"))
+        .andExpect(jsonPath("$.errors[1]").value("2: Firstname cannot be blank"))
+        .andExpect(jsonPath("$.finishedAt").exists());
+  }
+
+  @Test
+  @WithMockUser(username = "username_demo_1")
+  void importContactsAsync_shouldKeepVersionWhenFailingBeforeAnyImport(
+      @Autowired CollectionVersions collectionVersions) throws Exception {
+    MockMultipartFile csvFile =
+        new MockMultipartFile(
+            "file", "contacts.csv", "text/csv", "firstName,lastName\nGrace,Hopper\n".getBytes());
+    String version = collectionVersions.current(ContactService.COLLECTION);
+
+    MvcResult submitted =
+        mockMvc
+            .perform(multipart("/contacts/import/_async").file(csvFile))
+            .andExpect(status().isAccepted())
+            .andReturn();
+    String jobId =
+        objectMapper.readTree(submitted.getResponse().getContentAsString()).get("jobId").asText();
+
+    String status = "";
+    for (int attempt = 0; attempt < 50 && !status.equals("FAILED"); attempt++) {
+      Thread.sleep(100);
+      String job =
+          mockMvc
+              .perform(get("/contacts/import/" + jobId))
+              .andReturn()
+              .getResponse()
+              .getContentAsString();
+      status = objectMapper.readTree(job).get("status").asText();
+    }
+    assertEquals("FAILED", status);
+    assertEquals(version, collectionVersions.current(ContactService.COLLECTION));
+  }
+
+  @Test
+  @WithMockUser(username = "username_demo_1")
+  void dedupeContacts_shouldRunInBackgroundAndApplyOnce() throws Exception {
+    MvcResult submitted =
+        mockMvc.perform(post("/contacts/_dedupe")).andExpect(status().isAccepted()).andReturn();
+    String jobId =
+        objectMapper.readTree(submitted.getResponse().getContentAsString()).get("jobId").asText();
+
+    String status = "";
+    for (int attempt = 0; attempt < 50 && !status.equals("COMPLETED"); attempt++) {
+      Thread.sleep(100);
+      String job =
+          mockMvc
+              .perform(get("/contacts/_dedupe/" + jobId))
+              .andExpect(status().isOk())
+              .andReturn()
+              .getResponse()
+              .getContentAsString();
+      status = objectMapper.readTree(job).get("status").asText();
+    }
+    assertEquals("COMPLETED", status);
+
+    // The seeded contacts are all different people
+    mockMvc
+        .perform(get("/contacts/_dedupe/" + jobId))
+        .andExpect(jsonPath("$.contacts").value(5))
+        .andExpect(jsonPath("$.proposals.length()").value(0));
+
+    mockMvc
+        .perform(post("/contacts/_dedupe/" + jobId + "/apply"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.merged").value(0));
+
+    mockMvc.perform(post("/contacts/_dedupe/" + jobId + "/apply")).andExpect(status().isConflict());
+  }
+
+  @Test
+  @Transactional
+  void applyDedupe_shouldKeepProposalsThatWereNotApplied(
+      @Autowired JdbcTemplate jdbcTemplate,
+      @Autowired ContactDedupeJobs contactDedupeJobs,
+      @Autowired RedisTemplate<String, String> redisTemplate)
+      throws Exception {
+    jdbcTemplate.update(
+        "INSERT INTO contact (id, first_name, last_name) VALUES"
+            + " (921, 'Ada', 'King'), (922, 'Ada', 'Kng'), (923, 'Alan', 'Turing'),"
+            + " (924, 'Alan', 'Turin')");
+    ContactDedupeJob job = new ContactDedupeJob();
+    job.setJobId(UUID.randomUUID().toString());
+    job.setStatus(ContactDedupeJob.Status.COMPLETED);
+    job.setProposals(
+        List.of(
+            new ContactMergeProposal(921, List.of(922), 0.9),
+            new ContactMergeProposal(923, List.of(924), 0.9)));
+    redisTemplate
+        .opsForValue()
+        .set("contacts:dedupe:" + job.getJobId(), objectMapper.writeValueAsString(job));
+
+    assertEquals(1, contactDedupeJobs.apply(job.getJobId(), List.of(921)).getMerged());
+    ContactDedupeJob partial = contactDedupeJobs.get(job.getJobId());
+    assertEquals(ContactDedupeJob.Status.COMPLETED, partial.getStatus());
+    assertEquals(1, partial.getProposals().size());
+    assertEquals(923, partial.getProposals().get(0).getKeepId());
+
+    assertEquals(1, contactDedupeJobs.apply(job.getJobId(), null).getMerged());
+    assertEquals(
+        ContactDedupeJob.Status.APPLIED, contactDedupeJobs.get(job.getJobId()).getStatus());
+    assertThrows(IllegalStateException.class, () -> contactDedupeJobs.apply(job.getJobId(), null));
+    redisTemplate.delete("contacts:dedupe:" + job.getJobId());
+  }
+
+  @Test
+  @Transactional
+  void findDuplicates_shouldGroupNearDuplicatesAndMergeThem(
+      @Autowired JdbcTemplate jdbcTemplate, @Autowired ContactDeduplicator contactDeduplicator) {
+    // Explicit IDs keep the contact sequence untouched for the other tests
+    jdbcTemplate.update(
+        "INSERT INTO contact (id, first_name, last_name, department_id, employee_id)"
+            + " SELECT v.id, v.first_name, v.last_name, c.department_id, v.employee_id FROM (VALUES"
+            + " (901, 'Jon', 'Doe', NULL), (902, 'Jane', 'Smyth', 1002),"
+            + " (903, 'Jane', 'Smith', 2002)) v(id, first_name, last_name, employee_id)"
+            + " JOIN contact c ON c.id = 1");
+
+    ContactDedupeJob job = new ContactDedupeJob();
+    contactDeduplicator.findDuplicates(job);
+
+    assertEquals(8, job.getContacts());
+    List<ContactMergeProposal> proposals = job.getProposals();
+    assertEquals(2, proposals.size());
+    assertEquals(2, proposals.get(0).getKeepId());
+    assertEquals(List.of(902), proposals.get(0).getDuplicateIds());
+    assertEquals(1, proposals.get(1).getKeepId());
+    assertEquals(List.of(901), proposals.get(1).getDuplicateIds());
+
+    ContactMergeResult result = contactDeduplicator.merge(proposals);
+    assertEquals(2, result.getMerged());
+    assertEquals(2, result.getDeleted());
+    assertTrue(contactRepository.findById(901).isEmpty());
+    assertTrue(contactRepository.findById(903).isPresent());
+  }
+
+  @Test
+  @Transactional
+  void findDuplicates_shouldNotChainContactsWithDifferentEmployeeIds(
+      @Autowired JdbcTemplate jdbcTemplate, @Autowired ContactDeduplicator contactDeduplicator) {
+    // Contact 2 is Jane Smith with employee ID 1002, 911 matches her and 912 alike
+    jdbcTemplate.update(
+        "INSERT INTO contact (id, first_name, last_name, department_id, employee_id)"
+            + " SELECT v.id, 'Jane', 'Smith', c.department_id, v.employee_id FROM (VALUES"
+            + " (911, NULL::integer), (912, 2002)) v(id, employee_id) JOIN contact c ON c.id = 2");
+
+    ContactDedupeJob job = new ContactDedupeJob();
+    contactDeduplicator.findDuplicates(job);
+
+    List<ContactMergeProposal> proposals = job.getProposals();
+    assertEquals(1, proposals.size());
+    assertEquals(List.of(911), proposals.get(0).getDuplicateIds());
+
+    contactDeduplicator.merge(proposals);
+    assertTrue(contactRepository.findById(911).isEmpty());
+    assertTrue(contactRepository.findById(2).isPresent());
+    assertTrue(contactRepository.findById(912).isPresent());
+  }
+
+  @Test
+  @WithMockUser(username = "username_demo_1")
+  void getImportJob_shouldReturnNotFoundWithUnknownJobId() throws Exception {
+    mockMvc
+        .perform(get("/contacts/import/unknown"))
+        .andExpect(status().isNotFound())
+        .andExpect(jsonPath("$.message").value("Import job not found with id: unknown"));
+  }
+
+  @Test
+  @WithMockUser(username = "username_demo_1")
+  @Transactional
+  void importContacts_shouldSkipInvalidRowsAndReportThem() throws Exception {
+    String csvContent =
+        "firstName,lastName,title,department,project,avatar,employeeId\n"
+            + "Ada,Lovelace,Engineer,IT,Alpha Project,default,1006\n"
+            + "Alan,Turing,Engineer,IT,Alpha Project,default,abc\n"
+            + ",Hopper,Engineer,IT,Alpha Project,default,1008\n";
+
+    MockMultipartFile csvFile =
+        new MockMultipartFile("file", "contacts.csv", "text/csv", csvContent.getBytes());
+
+    mockMvc
+        .perform(multipart("/contacts/import").file(csvFile))
+        .andExpect(status().isCreated())
+        .andExpect(jsonPath("$.imported").value(1))
+        .andExpect(jsonPath("$.failed").value(2))
+        .andExpect(jsonPath("$.errors[0]").value("2: Employee ID must be a number"))
+        .andExpect(jsonPath("$.errors[1]").value("3: Firstname cannot be blank"));
+
+    assertEquals(6, contactRepository.findAll().size());
+  }
+
   @Test
   @WithMockUser(username = "username_demo_1")
   @Transactional
@@ -362,6 +696,55 @@ public class ContactTest {
     Assertions.assertEquals("Laden", contact2.getLastName());
   }
 
+  @Test
+  @WithMockUser(username = "username_demo_1")
+  @Transactional
+  void upsertContacts_shouldUpdateByEmployeeIdAndInsertTheRest() throws Exception {
+    // Columns in a different order and an ignored id column, as in a re-imported export
+    String csvContent =
+        "id,employeeId,lastName,firstName,title\n"
+            + "1,1001,Doe-Smith,John,Director\n"
+            + "2,1002,Smith,Jane,Developer\n"
+            + ",3001,Curie,Mary,Chemist\n"
+            + ",3001,Curie,Marie,Physicist\n"
+            + ",3002,Noether,,Mathematician\n"
+            + ",x,Hilbert,David,Mathematician\n";
+
+    MockMultipartFile csvFile =
+        new MockMultipartFile("file", "contacts.csv", "text/csv", csvContent.getBytes());
+
+    mockMvc
+        .perform(multipart("/contacts/import/_upsert").file(csvFile))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.inserted").value(1))
+        .andExpect(jsonPath("$.updated").value(1))
+        .andExpect(jsonPath("$.failed").value(2))
+        .andExpect(jsonPath("$.errors[0]").value("5: Firstname cannot be blank"))
+        .andExpect(jsonPath("$.errors[1]").value("6: Employee ID must be a number"));
+
+    Contact updated = contactRepository.findById(1).get();
+    assertEquals("Doe-Smith", updated.getLastName());
+    assertEquals("Director", updated.getTitle());
+    // Columns missing from the file are left as they were
+    assertEquals("IT", updated.getDepartment());
+
+    List<Contact> inserted =
+        contactRepository.findAll().stream()
+            .filter(contact -> contact.getEmployeeId() == 3001)
+            .toList();
+    assertEquals(1, inserted.size());
+    assertEquals("Marie", inserted.get(0).getFirstName());
+    assertEquals(6, contactRepository.findAll().size());
+
+    // Importing the same file again changes nothing
+    mockMvc
+        .perform(multipart("/contacts/import/_upsert").file(csvFile))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.inserted").value(0))
+        .andExpect(jsonPath("$.updated").value(0))
+        .andExpect(jsonPath("$.failed").value(2));
+  }
+
   @Test
   @WithMockUser(username = "username_demo_1")
   void importContacts_shouldThrowRuntimeExceptionWhenIOExceptionOccurs(
@@ -401,16 +784,223 @@ public class ContactTest {
     assertTrue(csvContent.contains("Michael,Brown,Sales Lead,Sales,Sales Strategy,default,1005"));
   }
 
+  @Test
+  @WithMockUser(username = "username_demo_1")
+  void exportContacts_shouldGzipFileWhenRequested() throws Exception {
+    MvcResult result =
+        mockMvc
+            .perform(get("/contacts/export?gzip=true"))
+            .andExpect(status().isOk())
+            .andExpect(header().string("Content-Encoding", "gzip"))
+            .andReturn();
+
+    try (GZIPInputStream in =
+        new GZIPInputStream(
+            new ByteArrayInputStream(result.getResponse().getContentAsByteArray()))) {
+      String csvContent = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+      assertTrue(
+          csvContent.startsWith(
+              "id,firstName,lastName,title,department,project,avatar,employeeId\n"));
+      assertTrue(csvContent.contains("John,Doe,Manager,IT,Alpha Project,default,1001"));
+    }
+  }
+
+  @Test
+  @WithMockUser(username = "username_demo_1")
+  void exportContacts_shouldExportFilteredColumnsOnly() throws Exception {
+    MvcResult result =
+        mockMvc
+            .perform(
+                get(
+                    "/contacts/export?department=IT&department=HR&columns=lastName,title,employeeId"))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    assertEquals(
+        "lastName,title,employeeId\n"
+            + "Doe,Manager,1001\n"
+            + "Smith,Developer,1002\n"
+            + "Williams,HR Manager,1004\n",
+        result.getResponse().getContentAsString());
+  }
+
+  @Test
+  @WithMockUser(username = "username_demo_1")
+  void exportContacts_shouldStoreDepartmentsOnceAndIgnoreUnknownFilterValues(
+      @Autowired JdbcTemplate jdbcTemplate) throws Exception {
+    // Both IT contacts point at the same dictionary entry
+    assertEquals(
+        1,
+        jdbcTemplate.queryForObject(
+            "SELECT count(DISTINCT c.department_id) FROM contact c"
+                + " JOIN contact_dictionary d ON d.id = c.department_id WHERE d.value = 'IT'",
+            Integer.class));
+
+    MvcResult result =
+        mockMvc
+            .perform(get("/contacts/export?department=No%20Such%20Department&columns=id"))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    assertEquals("id\n", result.getResponse().getContentAsString());
+    assertEquals(
+        0,
+        jdbcTemplate.queryForObject(
+            "SELECT count(*) FROM contact_dictionary WHERE value = 'No Such Department'",
+            Integer.class));
+  }
+
+  @Test
+  void contactDictionary_shouldCacheMissesUntilTheValueIsAdded(
+      @Autowired ContactDictionary contactDictionary, @Autowired JdbcTemplate jdbcTemplate) {
+    // The dictionary table outlives the test database schema, so use a value of this run
+    String value = "Department " + UUID.randomUUID();
+    assertTrue(contactDictionary.find(value).isEmpty());
+
+    // Added by another node, the miss stays cached for a while
+    jdbcTemplate.update("INSERT INTO contact_dictionary (value) VALUES (?)", value);
+    assertTrue(contactDictionary.find(value).isEmpty());
+
+    // Adding the value on this node replaces the miss
+    contactDictionary.ensure(List.of(value));
+    assertTrue(contactDictionary.find(value).isPresent());
+    assertEquals(List.of(value), contactDictionary.known(List.of(value)));
+  }
+
+  @Test
+  @WithMockUser(username = "username_demo_1")
+  void exportContacts_shouldExportNdjsonAndXlsx() throws Exception {
+    MvcResult ndjson =
+        mockMvc
+            .perform(get("/contacts/export?format=ndjson&project=Beta Project&columns=id,lastName"))
+            .andExpect(status().isOk())
+            .andExpect(header().string("Content-Type", "application/x-ndjson"))
+            .andReturn();
+    assertEquals("{\"id\":2,\"lastName\":\"Smith\"}\n", ndjson.getResponse().getContentAsString());
+
+    MvcResult xlsx =
+        mockMvc
+            .perform(get("/contacts/export?format=XLSX&title=Designer"))
+            .andExpect(status().isOk())
+            .andExpect(header().string("Content-Disposition", "attachment; filename=contacts.xlsx"))
+            .andReturn();
+    try (XSSFWorkbook workbook =
+        new XSSFWorkbook(new ByteArrayInputStream(xlsx.getResponse().getContentAsByteArray()))) {
+      Sheet sheet = workbook.getSheetAt(0);
+      assertEquals(1, sheet.getLastRowNum());
+      assertEquals("firstName", sheet.getRow(0).getCell(1).getStringCellValue());
+      assertEquals("Bob", sheet.getRow(1).getCell(1).getStringCellValue());
+      assertEquals(1003, sheet.getRow(1).getCell(7).getNumericCellValue());
+    }
+
+    mockMvc
+        .perform(get("/contacts/export?format=pdf"))
+        .andExpect(status().isBadRequest())
+        .andExpect(jsonPath("$.message").value("Unknown export format: pdf"));
+  }
+
+  @Test
+  @WithMockUser(username = "username_demo_1")
+  void exportSnapshot_shouldServeCachedFileWithETagAndRanges() throws Exception {
+    MvcResult result = awaitSnapshot(get("/contacts/export/snapshot"));
+    mockMvc
+        .perform(get("/contacts/export/snapshot"))
+        .andExpect(status().isOk())
+        .andExpect(header().string("Content-Type", "application/gzip"))
+        .andExpect(header().string("Accept-Ranges", "bytes"));
+    byte[] snapshot = result.getResponse().getContentAsByteArray();
+    String etag = result.getResponse().getHeader("ETag");
+
+    try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(snapshot))) {
+      String csvContent = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+      assertTrue(csvContent.contains("John,Doe,Manager,IT,Alpha Project,default,1001"));
+    }
+
+    mockMvc
+        .perform(get("/contacts/export/snapshot").header("If-None-Match", etag))
+        .andExpect(status().isNotModified());
+
+    // Resume the download from byte 10
+    MvcResult partial =
+        mockMvc
+            .perform(
+                get("/contacts/export/snapshot")
+                    .header("Range", "bytes=10-")
+                    .header("If-Range", etag))
+            .andExpect(status().isPartialContent())
+            .andExpect(
+                header()
+                    .string(
+                        "Content-Range",
+                        "bytes 10-" + (snapshot.length - 1) + "/" + snapshot.length))
+            .andReturn();
+    assertArrayEquals(
+        Arrays.copyOfRange(snapshot, 10, snapshot.length),
+        partial.getResponse().getContentAsByteArray());
+
+    mockMvc
+        .perform(get("/contacts/export/snapshot").header("Range", "bytes=" + snapshot.length + "-"))
+        .andExpect(status().isRequestedRangeNotSatisfiable());
+  }
+
+  @Test
+  @WithMockUser(username = "username_demo_1")
+  void exportContacts_shouldServeUnfilteredCsvFromSnapshot() throws Exception {
+    MvcResult result = awaitSnapshot(get("/contacts/export").header("Accept-Encoding", "gzip"));
+    assertEquals("gzip", result.getResponse().getHeader("Content-Encoding"));
+    assertEquals("text/csv", result.getResponse().getContentType());
+    String etag = result.getResponse().getHeader("ETag");
+    try (GZIPInputStream in =
+        new GZIPInputStream(
+            new ByteArrayInputStream(result.getResponse().getContentAsByteArray()))) {
+      String csvContent = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+      assertTrue(csvContent.contains("John,Doe,Manager,IT,Alpha Project,default,1001"));
+    }
+
+    mockMvc
+        .perform(
+            get("/contacts/export").header("Accept-Encoding", "gzip").header("If-None-Match", etag))
+        .andExpect(status().isNotModified());
+
+    // Clients that do not accept gzip get the same file decompressed
+    MvcResult plain =
+        mockMvc
+            .perform(get("/contacts/export"))
+            .andExpect(status().isOk())
+            .andExpect(header().doesNotExist("Content-Encoding"))
+            .andReturn();
+    assertTrue(plain.getResponse().getHeader("ETag").endsWith("\""));
+    assertTrue(
+        plain
+            .getResponse()
+            .getContentAsString()
+            .contains("Jane,Smith,Developer,IT,Beta Project,default,1002"));
+  }
+
+  // The first download starts building the snapshot and gets the live export
+  private MvcResult awaitSnapshot(MockHttpServletRequestBuilder request) throws Exception {
+    for (int attempt = 0; attempt < 50; attempt++) {
+      MvcResult result = mockMvc.perform(request).andExpect(status().isOk()).andReturn();
+      if (result.getResponse().getHeader("ETag") != null) {
+        return result;
+      }
+      Thread.sleep(100);
+    }
+    throw new AssertionError("The export snapshot was not built");
+  }
+
   @Test
   @WithMockUser(username = "username_demo_1")
   void exportContacts_shouldThrowRuntimeExceptionWhenIOExceptionOccurs(
       @Autowired ContactService contactService) throws Exception {
     HttpServletResponse mockResponse = mock(HttpServletResponse.class);
-    PrintWriter mockWriter = mock(PrintWriter.class);
+    ServletOutputStream mockStream = mock(ServletOutputStream.class);
 
-    // Simulate an IOException when trying to write to the response's PrintWriter
-    when(mockResponse.getWriter()).thenReturn(mockWriter);
-    doThrow(new IOException("Fake IO Exception")).when(mockWriter).write(anyString());
+    // Simulate an IOException when trying to write to the response's output stream
+    when(mockResponse.getOutputStream()).thenReturn(mockStream);
+    doThrow(new IOException("Fake IO Exception"))
+        .when(mockStream)
+        .write(any(byte[].class), anyInt(), anyInt());
 
     RuntimeException exception =
         assertThrows(
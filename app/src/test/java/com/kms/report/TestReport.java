@@ -1,25 +1,40 @@
 package com.kms.report;
 
+import static org.hamcrest.Matchers.contains;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.kms.domain.contact.Contact;
 import com.kms.domain.contact.ContactRepository;
+import com.kms.domain.report.ReportCache;
 import com.kms.domain.report.ReportService;
 import com.kms.domain.task.Task;
 import com.kms.domain.task.TaskRepository;
 import com.kms.domain.user.User;
 import com.kms.domain.user.UserRepository;
 import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
 
 @SpringBootTest()
 @AutoConfigureMockMvc
@@ -155,4 +170,201 @@ public class TestReport {
         .andExpect(jsonPath("$.values.Designer").value(1))
         .andExpect(jsonPath("$.values.Analyst").value(1));
   }
+
+  @Test
+  @WithMockUser(username = "testuser")
+  @Transactional
+  void shouldCountWritesMadeOutsideTheServices(@Autowired JdbcTemplate jdbcTemplate)
+      throws Exception {
+    // The counters are kept by triggers, so plain SQL updates are counted too
+    jdbcTemplate.update("UPDATE task SET is_completed = NOT is_completed");
+
+    mockMvc
+        .perform(get("/reports/_countBy/task/isCompleted"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.values.true").value(1))
+        .andExpect(jsonPath("$.values.false").value(2));
+  }
+
+  @Test
+  void shouldRunConcurrentIdenticalReportsOnce(@Autowired ReportCache reportCache)
+      throws Exception {
+    AtomicInteger loads = new AtomicInteger();
+    CountDownLatch loading = new CountDownLatch(1);
+    String query = "test:" + UUID.randomUUID();
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Map<String, Long>>> results = new ArrayList<>();
+      results.add(
+          executor.submit(
+              () ->
+                  reportCache.get(
+                      "task",
+                      query,
+                      new TypeReference<Map<String, Long>>() {},
+                      () -> {
+                        loads.incrementAndGet();
+                        loading.countDown();
+                        sleep(500);
+                        return Map.of("true", 2L);
+                      })));
+      loading.await();
+      for (int i = 0; i < 3; i++) {
+        results.add(
+            executor.submit(
+                () ->
+                    reportCache.get(
+                        "task",
+                        query,
+                        new TypeReference<Map<String, Long>>() {},
+                        () -> {
+                          loads.incrementAndGet();
+                          return Map.of("true", 0L);
+                        })));
+      }
+
+      for (Future<Map<String, Long>> result : results) {
+        assertEquals(Map.of("true", 2L), result.get(5, TimeUnit.SECONDS));
+      }
+      assertEquals(1, loads.get());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Test
+  @WithMockUser(username = "testuser")
+  void shouldRebuildCountersFromTheTable() throws Exception {
+    mockMvc.perform(post("/reports/_countBy/task/_rebuild")).andExpect(status().isNoContent());
+
+    mockMvc
+        .perform(get("/reports/_countBy/task/isCompleted"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.values.true").value(2))
+        .andExpect(jsonPath("$.values.false").value(1));
+
+    mockMvc
+        .perform(post("/reports/_countBy/invalidCollection/_rebuild"))
+        .andExpect(status().isNotFound());
+  }
+
+  @Test
+  @WithMockUser(username = "testuser")
+  void shouldGroupByTwoFieldsInOneQuery() throws Exception {
+    // Other tests change the title of contact 1002 at most, and delete or add other contacts
+    String query =
+        "{\"collection\": \"contact\", \"groupBy\": [\"department\", \"project\"],"
+            + " \"filters\": {\"employeeId\": [\"1001\", \"1002\", \"1003\", \"1004\"]},"
+            + " \"aggregates\": [{\"function\": \"COUNT\"},"
+            + " {\"function\": \"MAX\", \"field\": \"employeeId\"}]}";
+
+    mockMvc
+        .perform(post("/reports/_query").contentType(MediaType.APPLICATION_JSON).content(query))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.rows").value(3))
+        .andExpect(jsonPath("$.columns.department").value(contains("Design", "IT", "IT")))
+        .andExpect(
+            jsonPath("$.columns.project")
+                .value(contains("Beta Project", "Alpha Project", "Beta Project")))
+        .andExpect(jsonPath("$.columns.count").value(contains(1, 2, 1)))
+        .andExpect(jsonPath("$.columns['max(employeeId)']").value(contains(1003, 1004, 1002)));
+  }
+
+  @Test
+  @WithMockUser(username = "testuser")
+  void shouldRejectReportQueryOnUnknownField() throws Exception {
+    mockMvc
+        .perform(
+            post("/reports/_query")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"collection\": \"task\", \"groupBy\": [\"user\"]}"))
+        .andExpect(status().isBadRequest())
+        .andExpect(jsonPath("$.message").value("Unknown field 'user' for collection 'task'"));
+  }
+
+  @Test
+  @WithMockUser(username = "testuser")
+  void shouldCountTasksPerDayOfCreationAndCompletion() throws Exception {
+    mockMvc
+        .perform(get("/reports/_histogram/task/createdAt?interval=day"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.zone").value("UTC"))
+        .andExpect(jsonPath("$.buckets.length()").value(30))
+        .andExpect(jsonPath("$.counts.length()").value(30))
+        .andExpect(jsonPath("$.counts.sum()").value(3.0));
+
+    // Tasks 1 and 3 are saved completed
+    mockMvc
+        .perform(get("/reports/_histogram/task/completedAt?interval=hour&zone=Europe/Paris"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.counts.sum()").value(2.0));
+
+    mockMvc
+        .perform(get("/reports/_histogram/task/createdAt?interval=month"))
+        .andExpect(status().isBadRequest())
+        .andExpect(jsonPath("$.message").value("Unknown interval: month"));
+  }
+
+  @Test
+  @WithMockUser(username = "testuser")
+  void shouldReturnMostFrequentValuesOnly() throws Exception {
+    mockMvc
+        .perform(get("/reports/_countBy/contact/lastName?limit=1"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.values.length()").value(1))
+        .andExpect(jsonPath("$.values.Smith").value(2));
+
+    mockMvc
+        .perform(get("/reports/_countBy/task/isCompleted?limit=0"))
+        .andExpect(status().isBadRequest())
+        .andExpect(jsonPath("$.message").value("limit must be between 1 and 1000"));
+  }
+
+  @Test
+  @WithMockUser(username = "testuser")
+  void shouldEstimateDistinctValues(@Autowired RedisTemplate<String, String> redisTemplate)
+      throws Exception {
+    // Other test classes share Redis, so start from a sketch built from this database
+    redisTemplate.delete("reports:hll:task:task:built");
+
+    // While another node builds the sketch, the count is exact
+    redisTemplate.opsForValue().set("reports:hll:lock", "another node");
+    try {
+      mockMvc
+          .perform(get("/reports/_distinct/task/task"))
+          .andExpect(status().isOk())
+          .andExpect(jsonPath("$.count").value(3))
+          .andExpect(jsonPath("$.approximate").value(false));
+    } finally {
+      redisTemplate.delete("reports:hll:lock");
+    }
+
+    // Reads count exactly until the sketch they start is built in the background
+    for (int attempt = 0;
+        attempt < 50 && redisTemplate.opsForValue().get("reports:hll:task:task:built") == null;
+        attempt++) {
+      mockMvc
+          .perform(get("/reports/_distinct/task/task"))
+          .andExpect(status().isOk())
+          .andExpect(jsonPath("$.count").value(3));
+      Thread.sleep(100);
+    }
+
+    mockMvc
+        .perform(get("/reports/_distinct/task/task"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.count").value(3))
+        .andExpect(jsonPath("$.approximate").value(true))
+        .andExpect(jsonPath("$.builtAt").isNotEmpty());
+
+    mockMvc.perform(get("/reports/_distinct/task/isCompleted")).andExpect(status().isBadRequest());
+  }
 }
@@ -1,20 +1,26 @@
 package com.kms.task;
 
 import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.kms.domain.task.Task;
+import com.kms.domain.task.TaskCache;
 import com.kms.domain.task.TaskRepository;
 import com.kms.domain.task.TaskService;
 import com.kms.domain.task.dto.SaveTaskRequest;
 import com.kms.domain.user.User;
 import com.kms.domain.user.UserRepository;
+import com.kms.utils.jwt.JWTUtils;
 import jakarta.transaction.Transactional;
 import java.util.List;
+import java.util.Map;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
@@ -26,6 +32,7 @@ import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
 @SpringBootTest()
@@ -38,6 +45,7 @@ public class TaskTest {
   private final ObjectMapper objectMapper;
   private final TaskService taskService;
   private final TaskRepository taskRepository;
+  private static String token;
 
   @Autowired
   public TaskTest(
@@ -53,7 +61,10 @@ public class TaskTest {
 
   @BeforeAll
   static void initDatabase(
-      @Autowired UserRepository userRepository, @Autowired TaskRepository taskRepository) {
+      @Autowired UserRepository userRepository,
+      @Autowired TaskRepository taskRepository,
+      @Autowired TaskCache taskCache,
+      @Autowired JWTUtils jwtUtils) {
     // Clear existing data
     userRepository.deleteAll();
     taskRepository.deleteAll();
@@ -73,6 +84,12 @@ public class TaskTest {
     taskRepository.save(mockTask1);
     taskRepository.save(mockTask2);
     taskRepository.save(mockTask3);
+
+    // Drop task lists cached by previous runs against a since recreated database
+    taskCache.evict(1);
+    taskCache.evict(2);
+
+    token = jwtUtils.generateAccessToken("username_demo_1", Map.of("userId", "1"));
   }
 
   @Test
@@ -136,6 +153,43 @@ public class TaskTest {
     Assertions.assertFalse(newTask.getIsCompleted());
   }
 
+  @Test
+  @WithMockUser(username = "username_demo_1")
+  @Transactional
+  void saveTask_shouldReturnPreconditionFailedWithStaleVersion() throws Exception {
+    String etag =
+        mockMvc
+            .perform(get("/tasks/1"))
+            .andExpect(status().isOk())
+            .andReturn()
+            .getResponse()
+            .getHeader("ETag");
+    String body = "{\"task\": \"Mop floor\", \"isCompleted\": true}";
+
+    mockMvc
+        .perform(
+            MockMvcRequestBuilders.put("/tasks/1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(body)
+                .header("If-Match", etag)
+                .header("Authorization", "Bearer " + token))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.task").value("Mop floor"))
+        .andExpect(jsonPath("$.createdAt").isNotEmpty())
+        .andExpect(jsonPath("$.updatedAt").isNotEmpty())
+        .andExpect(jsonPath("$.completedAt").isNotEmpty())
+        .andExpect(header().string("ETag", not(etag)));
+
+    mockMvc
+        .perform(
+            MockMvcRequestBuilders.put("/tasks/1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(body)
+                .header("If-Match", etag)
+                .header("Authorization", "Bearer " + token))
+        .andExpect(status().isPreconditionFailed());
+  }
+
   @Test
   @WithMockUser(username = "username_demo_1")
   void saveTask_shouldReturnBadRequestWhenTaskIsBlank() throws Exception {
@@ -205,8 +259,75 @@ public class TaskTest {
   @Test
   @WithMockUser(username = "username_demo_1")
   void getAllTasks_shouldGetAllTasks() throws Exception {
-    List<Task> tasks = taskService.getAllTasks(1);
-    assertEquals(2, tasks.size());
+    mockMvc
+        .perform(get("/tasks").header("Authorization", "Bearer " + token))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.length()").value(2))
+        .andExpect(header().doesNotExist("X-Next-Cursor"));
+  }
+
+  @Test
+  @WithMockUser(username = "username_demo_1")
+  void getAllTasks_shouldReturnFirstPageWithNextCursor() throws Exception {
+    mockMvc
+        .perform(get("/tasks?limit=1").header("Authorization", "Bearer " + token))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.length()").value(1))
+        .andExpect(header().exists("X-Next-Cursor"));
+  }
+
+  @Test
+  @WithMockUser(username = "username_demo_1")
+  void getAllTasks_shouldFilterByText() throws Exception {
+    mockMvc
+        .perform(get("/tasks?q=kitchen").header("Authorization", "Bearer " + token))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.length()").value(1))
+        .andExpect(jsonPath("$[0].task").value("Clean kitchen"))
+        .andExpect(header().doesNotExist("X-Next-Cursor"));
+  }
+
+  @Test
+  @WithMockUser(username = "username_demo_1")
+  void getAllTasks_shouldReflectWritesAfterBeingCached() throws Exception {
+    assertEquals(2, taskService.getTaskPage(1, null, null, null, null).getTasks().size());
+
+    SaveTaskRequest request = new SaveTaskRequest();
+    request.setTask("Take out trash");
+    request.setIsCompleted(false);
+    Task created = taskService.addTasks(List.of(request), 1).get(0);
+
+    assertEquals(3, taskService.getTaskPage(1, null, null, null, null).getTasks().size());
+
+    taskService.deleteTask(created.getId());
+    assertEquals(2, taskService.getTaskPage(1, null, null, null, null).getTasks().size());
+  }
+
+  @Test
+  @WithMockUser(username = "username_demo_1")
+  void getAllTasks_shouldReturnNotModifiedUntilTasksChange(@Autowired TaskCache taskCache)
+      throws Exception {
+    String etag =
+        mockMvc
+            .perform(get("/tasks").header("Authorization", "Bearer " + token))
+            .andExpect(status().isOk())
+            .andReturn()
+            .getResponse()
+            .getHeader("ETag");
+    assertNotNull(etag);
+
+    mockMvc
+        .perform(
+            get("/tasks").header("Authorization", "Bearer " + token).header("If-None-Match", etag))
+        .andExpect(status().isNotModified());
+
+    taskCache.evict(1);
+
+    mockMvc
+        .perform(
+            get("/tasks").header("Authorization", "Bearer " + token).header("If-None-Match", etag))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.length()").value(2));
   }
 
   @Test
@@ -234,23 +355,128 @@ public class TaskTest {
     assertTrue(tasks.get(tasks.size() - 1).getIsCompleted());
   }
 
+  @Test
+  @WithMockUser(username = "username_demo_1")
+  @Transactional
+  void streamTasks_shouldSaveValidLinesAndReportInvalidOnes() throws Exception {
+    String ndjson =
+        """
+        {"task": "Water plants", "isCompleted": false}
+        {"task": "", "isCompleted": true}
+        {"task": "Walk dog", "isCompleted": true}
+        """;
+
+    mockMvc
+        .perform(
+            MockMvcRequestBuilders.post("/tasks/_stream")
+                .contentType("application/x-ndjson")
+                .content(ndjson)
+                .header("Authorization", "Bearer " + token))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.accepted").value(2))
+        .andExpect(jsonPath("$.rejected").value(1))
+        .andExpect(jsonPath("$.errors[0]").value("2: Task cannot be blank"));
+  }
+
+  @Test
+  @WithMockUser(username = "username_demo_1")
+  @Transactional
+  void bulkUpdateTasks_shouldOnlyChangeCurrentUsersTasks() throws Exception {
+    mockMvc
+        .perform(
+            MockMvcRequestBuilders.patch("/tasks/_bulk")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"action\": \"COMPLETE\", \"ids\": [1, 2, 3]}")
+                .header("Authorization", "Bearer " + token))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.action").value("COMPLETE"))
+        .andExpect(jsonPath("$.affected").value(2));
+
+    assertTrue(taskRepository.findById(1).get().getIsCompleted());
+    assertFalse(taskRepository.findById(3).get().getIsCompleted());
+
+    mockMvc
+        .perform(
+            MockMvcRequestBuilders.patch("/tasks/_bulk")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"action\": \"DELETE\", \"completed\": true}")
+                .header("Authorization", "Bearer " + token))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.affected").value(2));
+
+    assertTrue(taskRepository.findByUser_Id(1).isEmpty());
+    assertTrue(taskRepository.findById(3).isPresent());
+  }
+
+  @Test
+  @WithMockUser(username = "username_demo_1")
+  void bulkUpdateTasks_shouldReturnBadRequestWithoutIdsOrFilter() throws Exception {
+    mockMvc
+        .perform(
+            MockMvcRequestBuilders.patch("/tasks/_bulk")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"action\": \"DELETE\"}")
+                .header("Authorization", "Bearer " + token))
+        .andExpect(status().isBadRequest())
+        .andExpect(jsonPath("$.message").value("Either ids or completed must be given"));
+  }
+
+  @Test
+  @WithMockUser(username = "username_demo_1")
+  void streamTaskEvents_shouldPushChangesOfCurrentUser() throws Exception {
+    MvcResult result =
+        mockMvc
+            .perform(get("/tasks/stream").header("Authorization", "Bearer " + token))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+    SaveTaskRequest request = new SaveTaskRequest();
+    request.setTask("Feed cat");
+    request.setIsCompleted(false);
+    Task created = taskService.addTasks(List.of(request), 1).get(0);
+    taskService.deleteTask(created.getId());
+
+    // Events travel through Redis pub/sub, so give them a moment to arrive
+    String events = "";
+    for (int attempt = 0; attempt < 50 && !events.contains("event:DELETED"); attempt++) {
+      Thread.sleep(100);
+      events = result.getResponse().getContentAsString();
+    }
+    assertTrue(events.contains("event:CREATED"));
+    assertTrue(events.contains("\"task\":\"Feed cat\""));
+    assertTrue(events.contains("event:DELETED"));
+  }
+
   @Test
   @WithMockUser(username = "username_demo_1")
   void getTaskByName_shouldGetTasksByName() throws Exception {
     mockMvc
-        .perform(get("/tasks/search?name=clean").contentType(MediaType.APPLICATION_JSON))
+        .perform(
+            get("/tasks/search?name=clean")
+                .contentType(MediaType.APPLICATION_JSON)
+                .header("Authorization", "Bearer " + token))
         .andExpect(status().isOk())
         .andExpect(jsonPath("$.length()").value(2))
         .andExpect(jsonPath("$[0].task").value("Clean floor"))
         .andExpect(jsonPath("$[1].task").value("Clean kitchen"));
   }
 
+  @Test
+  @WithMockUser(username = "username_demo_1")
+  void getTaskByName_shouldOnlySearchCurrentUsersTasks() throws Exception {
+    mockMvc
+        .perform(get("/tasks/search?name=cook").header("Authorization", "Bearer " + token))
+        .andExpect(status().isNotFound());
+  }
+
   @Test
   @WithMockUser(username = "username_demo_1")
   void getTaskByName_shouldReturnNotFoundWithNonExistingName() throws Exception {
     mockMvc
         .perform(
-            get("/tasks/search?name=non existing task").contentType(MediaType.APPLICATION_JSON))
+            get("/tasks/search?name=non existing task")
+                .contentType(MediaType.APPLICATION_JSON)
+                .header("Authorization", "Bearer " + token))
         .andExpect(status().isNotFound())
         .andExpect(jsonPath("$.message").value("Task not found with name: non existing task"));
   }